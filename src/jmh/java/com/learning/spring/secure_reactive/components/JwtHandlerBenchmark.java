@@ -0,0 +1,48 @@
+package com.learning.spring.secure_reactive.components;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/* token issuing, verification served by the verified-token cache and a full signature check */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtHandlerBenchmark {
+
+    static final String SECRET = "====secretKey24354dfd54tedfklsd54df5424355ertdfgs====";
+
+    private JwtKeyRing jwtKeyRing;
+    private JwtHandler jwtHandler;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtKeyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(jwtKeyRing, "jwtSecret", SECRET);
+        jwtKeyRing.init();
+        jwtHandler = new JwtHandler(jwtKeyRing);
+        ReflectionTestUtils.setField(jwtHandler, "verifiedCacheMaxSize", 10_000L);
+        jwtHandler.init();
+        token = jwtHandler.generateJwtToken("2b1d5d3e-7a51-4c1b-9d8e-0f5c2a9b7e61");
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return jwtHandler.generateJwtToken("2b1d5d3e-7a51-4c1b-9d8e-0f5c2a9b7e61");
+    }
+
+    @Benchmark
+    public Boolean validateJwt() {
+        return jwtHandler.validateJwt(token).block();
+    }
+
+    @Benchmark
+    public Object parseAndVerifySignature() {
+        return jwtKeyRing.parser().parseSignedClaims(token);
+    }
+}
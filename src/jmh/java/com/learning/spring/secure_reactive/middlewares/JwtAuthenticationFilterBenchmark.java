@@ -0,0 +1,48 @@
+package com.learning.spring.secure_reactive.middlewares;
+
+import com.learning.spring.secure_reactive.components.JwtHandler;
+import com.learning.spring.secure_reactive.components.JwtKeyRing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/* the whole per-request authentication path: header extraction, verification and security context */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtAuthenticationFilterBenchmark {
+
+    private JwtAuthenticationFilter filter;
+    private String authorization;
+    private final WebFilterChain chain = exchange -> ReactiveSecurityContextHolder.getContext().then();
+
+    @Setup
+    public void setUp() {
+        JwtKeyRing jwtKeyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(jwtKeyRing, "jwtSecret", "====secretKey24354dfd54tedfklsd54df5424355ertdfgs====");
+        ReflectionTestUtils.invokeMethod(jwtKeyRing, "init");
+        JwtHandler jwtHandler = new JwtHandler(jwtKeyRing);
+        ReflectionTestUtils.setField(jwtHandler, "verifiedCacheMaxSize", 10_000L);
+        ReflectionTestUtils.invokeMethod(jwtHandler, "init");
+        filter = new JwtAuthenticationFilter(jwtHandler, new SimpleMeterRegistry());
+        authorization = "Bearer " + jwtHandler.generateJwtToken("2b1d5d3e-7a51-4c1b-9d8e-0f5c2a9b7e61");
+    }
+
+    @Benchmark
+    public Object filter() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users")
+                .header(HttpHeaders.AUTHORIZATION, authorization));
+        return filter.filter(exchange, chain).then(Mono.just(exchange)).block();
+    }
+}
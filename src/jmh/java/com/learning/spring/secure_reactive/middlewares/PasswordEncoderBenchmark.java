@@ -0,0 +1,39 @@
+package com.learning.spring.secure_reactive.middlewares;
+
+import com.learning.spring.secure_reactive.middlewares.configs.WebSecurityConfig;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/* the configured delegating BCrypt encoder, at the cost set in security.password.bcrypt-strength */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+    @Param({"10"})
+    private int strength;
+
+    private PasswordEncoder passwordEncoder;
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = WebSecurityConfig.delegatingPasswordEncoder(strength);
+        encoded = passwordEncoder.encode("1234567890");
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode("1234567890");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches("1234567890", encoded);
+    }
+}
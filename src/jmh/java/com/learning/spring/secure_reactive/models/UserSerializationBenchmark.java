@@ -0,0 +1,46 @@
+package com.learning.spring.secure_reactive.models;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/* Jackson encoding of the User payload, configured like the application's ObjectMapper */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserSerializationBenchmark {
+
+    @Param({"0", "10"})
+    private int albums;
+
+    private ObjectMapper objectMapper;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        UUID userId = UUID.randomUUID();
+        user = new User()
+                .setId(userId)
+                .setFirstName("firstName")
+                .setLastName("lastName")
+                .setEmail("user@mail.com")
+                .setAlbums(albums == 0 ? null : IntStream.range(0, albums)
+                        .mapToObj(i -> new Album(String.valueOf(i), "album " + i, userId))
+                        .toList());
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+}
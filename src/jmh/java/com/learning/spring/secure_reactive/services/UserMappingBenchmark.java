@@ -0,0 +1,85 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.entity.UserEntity;
+import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.BeanUtils;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Entity/model mapping only, hashing is replaced by a no-op encoder and runs on the calling thread.
+ * The beanUtils* benchmarks are the reflective copies the generated mapper replaced, kept as a baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserMappingBenchmark {
+
+    /* keeps hashing out of the measurement, even a low BCrypt cost would dominate it */
+    private static final PasswordEncoder PLAIN_TEXT = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    };
+
+    private UserService userService;
+    private UserEntity userEntity;
+    private CreateUserRequest createUserRequest;
+
+    @Setup
+    public void setUp() {
+        userService = new UserService(null, PLAIN_TEXT, null, null,
+                Schedulers.immediate(), null, null, null, Mappers.getMapper(UserMapper.class), null);
+        userEntity = new UserEntity()
+                .setId(UUID.randomUUID())
+                .setFirstName("firstName")
+                .setLastName("lastName")
+                .setEmail("user@mail.com")
+                .setPassword("{bcrypt}$2a$10$abcdefghijklmnopqrstuuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ01");
+        createUserRequest = new CreateUserRequest()
+                .setFirstName("firstName")
+                .setLastName("lastName")
+                .setEmail("user@mail.com")
+                .setPassword("1234567890");
+    }
+
+    @Benchmark
+    public User convertToModel() {
+        return userService.convertToModel(userEntity);
+    }
+
+    @Benchmark
+    public UserEntity convertToEntity() {
+        return userService.convertToEntity(createUserRequest).block();
+    }
+
+    @Benchmark
+    public User beanUtilsToModel() {
+        User user = new User();
+        BeanUtils.copyProperties(userEntity, user);
+        return user;
+    }
+
+    @Benchmark
+    public UserEntity beanUtilsToEntity() {
+        UserEntity entity = new UserEntity();
+        BeanUtils.copyProperties(createUserRequest, entity);
+        return entity;
+    }
+}
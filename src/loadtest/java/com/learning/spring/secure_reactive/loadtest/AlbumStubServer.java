@@ -0,0 +1,36 @@
+package com.learning.spring.secure_reactive.loadtest;
+
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/* stands in for the album service: answers /albums?userId=.. with albumsPerUser albums per user after a fixed delay */
+final class AlbumStubServer {
+
+    private AlbumStubServer() {
+    }
+
+    static DisposableServer start(int port, Duration latency, int albumsPerUser) {
+        return HttpServer.create()
+                .port(port)
+                .route(routes -> routes.get("/albums", (request, response) -> {
+                    List<String> userIds = new QueryStringDecoder(request.uri()).parameters()
+                            .getOrDefault("userId", List.of());
+                    String body = userIds.stream()
+                            .flatMap(userId -> IntStream.range(0, albumsPerUser)
+                                    .mapToObj(i -> "{\"id\":\"" + userId + "-" + i + "\",\"title\":\"Album " + i
+                                            + "\",\"userId\":\"" + userId + "\"}"))
+                            .collect(Collectors.joining(",", "[", "]"));
+                    Mono<String> delayed = latency.isZero() ? Mono.just(body) : Mono.just(body).delayElement(latency);
+                    return response.header(HttpHeaderNames.CONTENT_TYPE, "application/json").sendString(delayed);
+                }))
+                .bindNow();
+    }
+}
@@ -0,0 +1,111 @@
+package com.learning.spring.secure_reactive.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Latency histograms in microseconds, one per scenario plus one for the delay between sending a create and the
+ * user reaching a stream subscriber. Request latencies are taken from the time a request was scheduled, not from
+ * when it was actually sent, so a stalled server shows up in the percentiles instead of slowing the load down.
+ */
+final class LatencyReport {
+
+    static final String STREAM_DELIVERY = "stream-delivery";
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private volatile boolean recording;
+    private volatile long startedAt;
+    private volatile long stoppedAt;
+
+    LatencyReport() {
+        for (Scenario scenario : Scenario.values()) add(scenario.key());
+        add(STREAM_DELIVERY);
+    }
+
+    private void add(String name) {
+        histograms.put(name, new ConcurrentHistogram(3));
+        errors.put(name, new LongAdder());
+    }
+
+    /* drops what was recorded during the warmup */
+    void start() {
+        histograms.values().forEach(Histogram::reset);
+        errors.values().forEach(LongAdder::reset);
+        startedAt = System.nanoTime();
+        recording = true;
+    }
+
+    void stop() {
+        recording = false;
+        stoppedAt = System.nanoTime();
+    }
+
+    void success(String name, long scheduledAtNanos) {
+        if (recording) histograms.get(name).recordValue(Math.max(0, (System.nanoTime() - scheduledAtNanos) / 1_000));
+    }
+
+    void error(String name) {
+        if (recording) errors.get(name).increment();
+    }
+
+    void print(PrintStream out) {
+        double seconds = Math.max(1, stoppedAt - startedAt) / 1e9;
+        out.printf("%n%-16s %9s %8s %9s %9s %9s %9s %9s %9s%n",
+                "scenario", "count", "errors", "per sec", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        histograms.forEach((name, histogram) -> {
+            long count = histogram.getTotalCount();
+            long failed = errors.get(name).sum();
+            if (count == 0 && failed == 0) return;
+            out.printf("%-16s %9d %8d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f%n", name, count, failed, count / seconds,
+                    millis(histogram, 50), millis(histogram, 90), millis(histogram, 99), millis(histogram, 99.9),
+                    histogram.getMaxValue() / 1_000.0);
+        });
+    }
+
+    /* full percentile distributions, in the .hgrm format read by the HdrHistogram plotter */
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            if (entry.getValue().getTotalCount() == 0) continue;
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                entry.getValue().outputPercentileDistribution(out, 1_000.0);
+            }
+        }
+    }
+
+    /* the problems that fail the run, empty when within the limits */
+    String violations(double maxErrorRate, Duration maxP99) {
+        StringBuilder violations = new StringBuilder();
+        long requests = 0;
+        long failed = 0;
+        for (Scenario scenario : Scenario.values()) {
+            Histogram histogram = histograms.get(scenario.key());
+            requests += histogram.getTotalCount();
+            failed += errors.get(scenario.key()).sum();
+            if (maxP99 != null && histogram.getTotalCount() > 0
+                    && histogram.getValueAtPercentile(99) > maxP99.toNanos() / 1_000) {
+                violations.append(String.format("%s p99 %.2fms is above %dms%n",
+                        scenario.key(), millis(histogram, 99), maxP99.toMillis()));
+            }
+        }
+        double errorRate = requests + failed == 0 ? 0 : (double) failed / (requests + failed);
+        if (errorRate > maxErrorRate) {
+            violations.append(String.format("error rate %.4f is above %.4f%n", errorRate, maxErrorRate));
+        }
+        return violations.toString();
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1_000.0;
+    }
+}
@@ -0,0 +1,269 @@
+package com.learning.spring.secure_reactive.loadtest;
+
+import com.learning.spring.secure_reactive.SecureReactiveApplication;
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ * Starts the application on a random port with its in-memory store and a stub album server, creates and logs in
+ * loadtest.users users, opens loadtest.streams stream subscribers and then issues loadtest.rate requests per
+ * second drawn from loadtest.mix: a warmup that is not recorded, followed by the measured run.
+ *
+ * Prints the per scenario percentiles and throughput, writes the .hgrm distributions to loadtest.report-dir and
+ * exits with 1 when the error rate or a p99 is above its limit, see LoadTestOptions.
+ */
+public final class LoadTest {
+
+    /* AlbumService calls the album service on this port */
+    private static final int ALBUM_PORT = 8084;
+    private static final String PASSWORD = "password123";
+    private static final ParameterizedTypeReference<ServerSentEvent<User>> USER_EVENT = new ParameterizedTypeReference<>() {
+    };
+
+    private final LoadTestOptions options;
+    private final WebClient client;
+    private final LatencyReport report = new LatencyReport();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    /* when each create was scheduled, by email, to time its delivery to the stream subscribers */
+    private final Map<String, Long> createScheduledAt = new ConcurrentHashMap<>();
+    private List<SeededUser> users = List.of();
+
+    private record SeededUser(String id, String email, String authorization) {
+    }
+
+    private LoadTest(LoadTestOptions options, int port) {
+        this.options = options;
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("loadtest")
+                .maxConnections(options.connections())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofMinutes(1))
+                .build();
+        this.client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connectionProvider)))
+                .build();
+    }
+
+    public static void main(String[] args) {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new SimpleCommandLinePropertySource(args));
+        LoadTestOptions options = Binder.get(environment).bindOrCreate("loadtest", LoadTestOptions.class);
+        if (options.rate() < 1 || options.users() < 1) {
+            throw new IllegalArgumentException("loadtest.rate and loadtest.users must be at least 1");
+        }
+
+        DisposableServer albumServer = AlbumStubServer.start(ALBUM_PORT, options.albumLatency(), options.albumsPerUser());
+        ConfigurableApplicationContext context = SpringApplication.run(SecureReactiveApplication.class,
+                withDefaults(args, "--server.port=0", "--management.server.port=0", "--logging.level.io.r2dbc.h2=info"));
+        int exitCode;
+        try {
+            int port = ((ReactiveWebServerApplicationContext) context).getWebServer().getPort();
+            exitCode = new LoadTest(options, port).run();
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 2;
+        } finally {
+            SpringApplication.exit(context);
+            albumServer.disposeNow();
+        }
+        System.exit(exitCode);
+    }
+
+    /* as arguments, so they win over application.properties unless given on the command line */
+    private static String[] withDefaults(String[] args, String... defaults) {
+        List<String> merged = new ArrayList<>(List.of(args));
+        for (String option : defaults) {
+            String key = option.substring(0, option.indexOf('=') + 1);
+            if (merged.stream().noneMatch(arg -> arg.startsWith(key))) merged.add(option);
+        }
+        return merged.toArray(String[]::new);
+    }
+
+    private int run() throws Exception {
+        Scenario[] wheel = options.weights().entrySet().stream()
+                .flatMap(weight -> Collections.nCopies(weight.getValue(), weight.getKey()).stream())
+                .toArray(Scenario[]::new);
+
+        System.out.printf("Seeding %d users%n", options.users());
+        seed();
+        Disposable streams = openStreams();
+
+        System.out.printf("Warming up for %s at %d req/s%n", options.warmup(), options.rate());
+        drive(wheel, options.warmup());
+        report.start();
+        System.out.printf("Running for %s at %d req/s, mix %s%n", options.duration(), options.rate(), options.mix());
+        drive(wheel, options.duration());
+        report.stop();
+        int pending = awaitInFlight(Duration.ofSeconds(30));
+        streams.dispose();
+
+        report.print(System.out);
+        if (pending > 0) System.out.printf("%d requests were still pending at the end and are not counted%n", pending);
+        report.write(Path.of(options.reportDir()));
+
+        String violations = report.violations(options.maxErrorRate(), options.maxP99());
+        if (!violations.isEmpty()) {
+            System.out.print("FAILED\n" + violations);
+            return 1;
+        }
+        return 0;
+    }
+
+    private void seed() {
+        users = Flux.range(0, options.users())
+                .flatMap(i -> {
+                    String email = "seed-" + runId + "-" + i + "@loadtest.local";
+                    return client.post().uri("/users")
+                            .bodyValue(createUserRequest(email))
+                            .retrieve()
+                            .toBodilessEntity()
+                            .then(client.post().uri("/login")
+                                    .bodyValue(Map.of("email", email, "password", PASSWORD))
+                                    .retrieve()
+                                    .toBodilessEntity())
+                            .map(response -> new SeededUser(response.getHeaders().getFirst("UserId"), email,
+                                    response.getHeaders().getFirst(HttpHeaders.AUTHORIZATION)));
+                }, 16)
+                .collectList()
+                .block(Duration.ofMinutes(5));
+    }
+
+    private Disposable openStreams() {
+        return Flux.range(0, options.streams())
+                .flatMap(i -> client.get().uri("/users/stream")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .retrieve()
+                        .bodyToFlux(USER_EVENT)
+                        .onErrorResume(e -> {
+                            report.error(LatencyReport.STREAM_DELIVERY);
+                            return Flux.empty();
+                        }), Math.max(1, options.streams()))
+                .subscribe(event -> {
+                    if (event.data() == null) return;
+                    Long scheduledAt = createScheduledAt.get(event.data().getEmail());
+                    if (scheduledAt != null) report.success(LatencyReport.STREAM_DELIVERY, scheduledAt);
+                });
+    }
+
+    /*
+     * Open loop: request i is due at start + i / rate whether or not earlier ones have completed. A generator that
+     * falls behind sends the overdue requests at once, their wait is part of the recorded latency.
+     */
+    private void drive(Scenario[] wheel, Duration duration) {
+        long interval = 1_000_000_000L / options.rate();
+        long requests = duration.toNanos() / interval;
+        long start = System.nanoTime();
+        long maxLag = 0;
+        for (long i = 0; i < requests; i++) {
+            long scheduledAt = start + i * interval;
+            long wait = scheduledAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                maxLag = Math.max(maxLag, -wait);
+            }
+            send(wheel[ThreadLocalRandom.current().nextInt(wheel.length)], scheduledAt);
+        }
+        if (maxLag > interval) {
+            System.out.printf("The generator fell up to %dms behind schedule, the host may be saturated%n",
+                    maxLag / 1_000_000);
+        }
+    }
+
+    private void send(Scenario scenario, long scheduledAt) {
+        if (inFlight.incrementAndGet() > options.maxInFlight()) {
+            inFlight.decrementAndGet();
+            report.error(scenario.key());
+            return;
+        }
+        request(scenario, scheduledAt)
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .subscribe(status -> {
+                    if (status.is2xxSuccessful()) {
+                        report.success(scenario.key(), scheduledAt);
+                    } else {
+                        report.error(scenario.key());
+                    }
+                }, e -> report.error(scenario.key()));
+    }
+
+    private Mono<HttpStatusCode> request(Scenario scenario, long scheduledAt) {
+        SeededUser user = users.get(ThreadLocalRandom.current().nextInt(users.size()));
+        return switch (scenario) {
+            case LOGIN -> client.post().uri("/login")
+                    .bodyValue(Map.of("email", user.email(), "password", PASSWORD))
+                    .exchangeToMono(LoadTest::status);
+            case CREATE -> {
+                String email = "load-" + runId + "-" + sequence.incrementAndGet() + "@loadtest.local";
+                createScheduledAt.put(email, scheduledAt);
+                yield client.post().uri("/users")
+                        .bodyValue(createUserRequest(email))
+                        .exchangeToMono(LoadTest::status);
+            }
+            case GET -> client.get().uri("/users/{id}", user.id())
+                    .header(HttpHeaders.AUTHORIZATION, user.authorization())
+                    .exchangeToMono(LoadTest::status);
+            case GET_ALBUMS -> client.get().uri("/users/{id}?include=albums", user.id())
+                    .header(HttpHeaders.AUTHORIZATION, user.authorization())
+                    .exchangeToMono(LoadTest::status);
+            case LIST -> client.get().uri("/users?limit=50")
+                    .header(HttpHeaders.AUTHORIZATION, user.authorization())
+                    .exchangeToMono(LoadTest::status);
+        };
+    }
+
+    /* reads the whole body so the latency covers the complete response */
+    private static Mono<HttpStatusCode> status(ClientResponse response) {
+        return response.releaseBody().thenReturn(response.statusCode());
+    }
+
+    private int awaitInFlight(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        return inFlight.get();
+    }
+
+    private static CreateUserRequest createUserRequest(String email) {
+        return new CreateUserRequest()
+                .setFirstName("Load")
+                .setLastName("Tester")
+                .setEmail(email)
+                .setPassword(PASSWORD);
+    }
+}
@@ -0,0 +1,46 @@
+package com.learning.spring.secure_reactive.loadtest;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * loadtest.* options, given as --loadtest.<name>=<value> arguments. Every other argument is passed to the
+ * application, e.g. --security.password.bcrypt-strength=4.
+ *
+ * rate             requests per second, issued on schedule whatever the response times (open loop)
+ * mix              relative weights of the scenarios, e.g. login=1,create=1,get=4,get-albums=2,list=2
+ * users            users created and logged in before the run, picked at random by the scenarios
+ * streams          /users/stream subscribers held open during the run
+ * max-in-flight    requests not sent because this many are pending count as errors
+ * album-latency    response delay of the stub album server, which listens on the port AlbumService calls
+ * max-error-rate   the run fails above this share of failed requests
+ * max-p99          the run fails when a scenario p99 exceeds this, unset to only report
+ */
+public record LoadTestOptions(@DefaultValue("100") int rate,
+                              @DefaultValue("60s") Duration duration,
+                              @DefaultValue("10s") Duration warmup,
+                              @DefaultValue("login=1,create=1,get=4,get-albums=2,list=2") String mix,
+                              @DefaultValue("100") int users,
+                              @DefaultValue("10") int streams,
+                              @DefaultValue("5000") int maxInFlight,
+                              @DefaultValue("500") int connections,
+                              @DefaultValue("20ms") Duration albumLatency,
+                              @DefaultValue("5") int albumsPerUser,
+                              @DefaultValue("target/loadtest") String reportDir,
+                              @DefaultValue("0.01") double maxErrorRate,
+                              Duration maxP99) {
+
+    Map<Scenario, Integer> weights() {
+        Map<Scenario, Integer> weights = new EnumMap<>(Scenario.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=", 2);
+            int weight = parts.length == 2 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) weights.put(Scenario.of(parts[0].trim()), weight);
+        }
+        if (weights.isEmpty()) throw new IllegalArgumentException("loadtest.mix has no scenario with a positive weight");
+        return weights;
+    }
+}
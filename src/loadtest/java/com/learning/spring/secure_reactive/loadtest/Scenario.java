@@ -0,0 +1,30 @@
+package com.learning.spring.secure_reactive.loadtest;
+
+import java.util.Arrays;
+
+public enum Scenario {
+
+    LOGIN("login"),
+    CREATE("create"),
+    GET("get"),
+    GET_ALBUMS("get-albums"),
+    LIST("list");
+
+    private final String key;
+
+    Scenario(String key) {
+        this.key = key;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    static Scenario of(String key) {
+        return Arrays.stream(values())
+                .filter(scenario -> scenario.key.equals(key))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown scenario " + key + ", expected one of "
+                        + Arrays.stream(values()).map(Scenario::key).toList()));
+    }
+}
@@ -0,0 +1,136 @@
+package com.learning.spring.secure_reactive.codecs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import com.learning.spring.secure_reactive.models.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/*
+ * Writes a single User as JSON encoded once and kept per user id, together with a weak ETag computed from those
+ * bytes. The bytes live in a read-only direct buffer that every response wraps without copying, and a matching
+ * If-None-Match is answered with 304. An entry is only reused while the user equals the snapshot it was encoded
+ * from, so a changed user is encoded again. Users with albums and multi-value bodies go to the Jackson writer.
+ */
+public class CachedUserJsonWriter implements HttpMessageWriter<User> {
+
+    private static final List<MediaType> MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON);
+
+    private final ObjectMapper objectMapper;
+    private final UserMapper userMapper;
+    private final HttpMessageWriter<Object> delegate;
+    private final Cache<UUID, EncodedUser> cache;
+
+    public CachedUserJsonWriter(ObjectMapper objectMapper, UserMapper userMapper, long maxSize, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.userMapper = userMapper;
+        this.delegate = new EncoderHttpMessageWriter<>(new Jackson2JsonEncoder(objectMapper));
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .<UUID, EncodedUser>build(), "users.json");
+    }
+
+    @Override
+    public List<MediaType> getWritableMediaTypes() {
+        return MEDIA_TYPES;
+    }
+
+    @Override
+    public boolean canWrite(ResolvableType elementType, @Nullable MediaType mediaType) {
+        return User.class == elementType.toClass()
+                && (mediaType == null || MediaType.APPLICATION_JSON.isCompatibleWith(mediaType));
+    }
+
+    /* outside a server exchange there is no ETag to negotiate, plain encoding */
+    @Override
+    public Mono<Void> write(Publisher<? extends User> inputStream, ResolvableType elementType,
+                            @Nullable MediaType mediaType, ReactiveHttpOutputMessage message, Map<String, Object> hints) {
+        return delegate.write(inputStream, elementType, mediaType, message, hints);
+    }
+
+    @Override
+    public Mono<Void> write(Publisher<? extends User> inputStream, ResolvableType actualType, ResolvableType elementType,
+                            @Nullable MediaType mediaType, ServerHttpRequest request, ServerHttpResponse response,
+                            Map<String, Object> hints) {
+        if (!(inputStream instanceof Mono<? extends User> single)) {
+            return delegate.write(inputStream, actualType, elementType, mediaType, request, response, hints);
+        }
+        return single.flatMap(user -> {
+            if (user.getId() == null || user.getAlbums() != null) {
+                return delegate.write(Mono.just(user), actualType, elementType, mediaType, request, response, hints);
+            }
+
+            EncodedUser encoded = encode(user);
+            HttpHeaders headers = response.getHeaders();
+            headers.setETag(encoded.etag());
+            if (isNotModified(request, response, encoded.etag())) {
+                response.setStatusCode(HttpStatus.NOT_MODIFIED);
+                return response.setComplete();
+            }
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.setContentLength(encoded.json().remaining());
+            return response.writeWith(Mono.just(response.bufferFactory().wrap(encoded.json().duplicate())));
+        });
+    }
+
+    private EncodedUser encode(User user) {
+        EncodedUser cached = cache.getIfPresent(user.getId());
+        if (cached != null && cached.user().equals(user)) return cached;
+
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(user);
+        } catch (JsonProcessingException e) {
+            throw new EncodingException("JSON encoding error: " + e.getOriginalMessage(), e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(json.length).put(json).flip().asReadOnlyBuffer();
+        EncodedUser encoded = new EncodedUser(userMapper.copy(user), buffer, "W/\"" + DigestUtils.md5DigestAsHex(json) + "\"");
+        cache.put(user.getId(), encoded);
+        return encoded;
+    }
+
+    /* only a plain successful read can turn into 304, a created user is always sent */
+    private static boolean isNotModified(ServerHttpRequest request, ServerHttpResponse response, String etag) {
+        HttpStatusCode status = response.getStatusCode();
+        if (status != null && status.value() != HttpStatus.OK.value()) return false;
+        if (request.getMethod() != HttpMethod.GET && request.getMethod() != HttpMethod.HEAD) return false;
+
+        String opaqueTag = withoutWeakPrefix(etag);
+        return request.getHeaders().getIfNoneMatch().stream()
+                .anyMatch(candidate -> candidate.equals("*") || withoutWeakPrefix(candidate).equals(opaqueTag));
+    }
+
+    private static String withoutWeakPrefix(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    /* the user is a private copy, so the snapshot cannot change after encoding */
+    private record EncodedUser(User user, ByteBuffer json, String etag) {
+    }
+}
@@ -1,13 +1,20 @@
 package com.learning.spring.secure_reactive.components;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.JwtException;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.Date;
@@ -16,41 +23,102 @@ import java.util.Optional;
 @Component
 public class JwtHandler {
 
-    @Value("${jwt.client-secret:defaultKey}")
-    private String jwtSecret;
+    private final JwtKeyRing jwtKeyRing;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
+    /* verified claims keyed by SHA-256 of the token, each entry expires together with its token */
+    private Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    public JwtHandler(JwtKeyRing jwtKeyRing) {
+        this.jwtKeyRing = jwtKeyRing;
+    }
+
+    @PostConstruct
+    void init() {
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new VerifiedTokenExpiry())
+                .build();
+    }
 
     public String generateJwtToken(String subject) {
-        return Jwts.builder()
+        return jwtKeyRing.signedBuilder()
                 .claim("sub", subject)
                 .issuedAt(Date.from(Instant.now()))
                 .expiration(Date.from(Instant.now().plus(1, ChronoUnit.HOURS)))
-                .signWith(getKey())
                 .compact();
     }
 
     public Mono<Boolean> validateJwt(String token) {
-        return Mono.just(token)
-                .map(this::parseToken)
-                .map(claims -> !claims.getExpiration().before(new Date()))
-                .onErrorReturn(false);
+        return Mono.fromSupplier(() -> verifySubject(token).isPresent());
+    }
+
+    public String extractTokenSubject(String token) {
+        return verifySubject(token)
+                .orElseThrow(() -> new JwtException("token is invalid or expired"));
     }
 
-    public String extractTokenSubject(String token){
-        return parseToken(token).getSubject();
+    /* returns the subject of a valid token, verifying the signature at most once per token lifetime */
+    public Optional<String> verifySubject(String token) {
+        ByteBuffer digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null) {
+            if (jwtKeyRing.contains(cached.kid())) return Optional.of(cached.subject());
+            verifiedTokens.invalidate(digest);
+        }
+
+        try {
+            Jws<Claims> jws = parseToken(token);
+            Claims claims = jws.getPayload();
+            /* tokens without a subject are never cached, so a repeated one is rejected the same way */
+            if (claims.getSubject() == null || claims.getExpiration() == null || claims.getExpiration().before(new Date())) {
+                return Optional.empty();
+            }
+            /* tokens issued here carry no audience, one that does was meant for another service */
+            if (claims.getAudience() != null && !claims.getAudience().isEmpty()) {
+                return Optional.empty();
+            }
+            String kid = jws.getHeader().getKeyId() != null ? jws.getHeader().getKeyId() : jwtKeyRing.activeKid();
+            verifiedTokens.put(digest, new VerifiedToken(claims.getSubject(), kid, claims.getExpiration().toInstant()));
+            return Optional.of(claims.getSubject());
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private Jws<Claims> parseToken(String token) {
+        return jwtKeyRing.parser().parseSignedClaims(token);
+    }
+
+    private static ByteBuffer digest(String token) {
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                    .digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
-    private Claims parseToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    private record VerifiedToken(String subject, String kid, Instant expiresAt) {
     }
 
-    private SecretKey getKey() {
-        return Optional.ofNullable(jwtSecret)
-                .map(String::getBytes)
-                .map(Keys::hmacShaKeyFor)
-                .orElseThrow(() -> new IllegalArgumentException("token secret must be configured in the application properties"));
+    private static class VerifiedTokenExpiry implements Expiry<ByteBuffer, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(ByteBuffer key, VerifiedToken value, long currentTime) {
+            return Math.max(0, ChronoUnit.NANOS.between(Instant.now(), value.expiresAt()));
+        }
+
+        @Override
+        public long expireAfterUpdate(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(ByteBuffer key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
     }
 }
@@ -0,0 +1,162 @@
+package com.learning.spring.secure_reactive.components;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.Key;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/*
+ * Holds the signing keys used for JWTs. Keys are read from jwt.keys.file (properties format, "active-kid=<kid>"
+ * plus one "key.<kid>=<secret>" per key) and re-read whenever the file changes. Without a file the ring holds
+ * jwt.client-secret under the "default" kid. Each reload builds a new immutable snapshot, so requests already
+ * verifying against the previous snapshot are not affected by the swap.
+ */
+@Component
+@Slf4j
+public class JwtKeyRing {
+
+    private static final String DEFAULT_KID = "default";
+    private static final String ACTIVE_KID_PROPERTY = "active-kid";
+    private static final String KEY_PREFIX = "key.";
+
+    @Value("${jwt.client-secret:defaultKey}")
+    private String jwtSecret;
+
+    @Value("${jwt.keys.file:}")
+    private String keysFile;
+
+    @Value("${jwt.keys.reload-interval:10s}")
+    private Duration reloadInterval;
+
+    private volatile KeySet keySet;
+    private volatile FileTime keysFileModifiedAt;
+    private Disposable reloadTask;
+
+    @PostConstruct
+    void init() {
+        if (!StringUtils.hasText(keysFile)) {
+            this.keySet = KeySet.of(DEFAULT_KID, Map.of(DEFAULT_KID, hmacKey(DEFAULT_KID, jwtSecret)));
+            return;
+        }
+
+        reload();
+        if (keySet == null) {
+            throw new IllegalStateException("jwt keys could not be loaded from " + keysFile);
+        }
+        this.reloadTask = Flux.interval(reloadInterval, reloadInterval, Schedulers.boundedElastic())
+                .subscribe(tick -> reloadIfModified());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (reloadTask != null) reloadTask.dispose();
+    }
+
+    public String activeKid() {
+        return keySet.activeKid();
+    }
+
+    /* a builder stamped with the active kid and signed with its key, both taken from the same snapshot */
+    public JwtBuilder signedBuilder() {
+        KeySet current = keySet;
+        return Jwts.builder()
+                .header().keyId(current.activeKid()).and()
+                .signWith(current.keys().get(current.activeKid()));
+    }
+
+    public JwtParser parser() {
+        return keySet.parser();
+    }
+
+    public boolean contains(String kid) {
+        return kid != null && keySet.keys().containsKey(kid);
+    }
+
+    void reloadIfModified() {
+        try {
+            FileTime modifiedAt = Files.getLastModifiedTime(Path.of(keysFile));
+            if (!modifiedAt.equals(keysFileModifiedAt)) reload();
+        } catch (IOException e) {
+            log.error("Cannot read jwt keys file {} : {}", keysFile, e.getMessage());
+        }
+    }
+
+    void reload() {
+        Path path = Path.of(keysFile);
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            FileTime modifiedAt = Files.getLastModifiedTime(path);
+            Properties properties = new Properties();
+            properties.load(reader);
+
+            Map<String, SecretKey> keys = new HashMap<>();
+            for (String name : properties.stringPropertyNames()) {
+                if (name.startsWith(KEY_PREFIX)) {
+                    String kid = name.substring(KEY_PREFIX.length());
+                    keys.put(kid, hmacKey(kid, properties.getProperty(name)));
+                }
+            }
+            String activeKid = properties.getProperty(ACTIVE_KID_PROPERTY);
+            if (activeKid == null || !keys.containsKey(activeKid)) {
+                throw new IllegalArgumentException("active-kid must name one of the configured keys");
+            }
+
+            this.keySet = KeySet.of(activeKid, keys);
+            this.keysFileModifiedAt = modifiedAt;
+            log.info("Loaded {} jwt keys, active kid {}", keys.size(), activeKid);
+        } catch (IOException | JwtException | IllegalArgumentException e) {
+            log.error("Cannot load jwt keys from {} : {}", keysFile, e.getMessage());
+        }
+    }
+
+    private static SecretKey hmacKey(String kid, String secret) {
+        if (!StringUtils.hasText(secret)) {
+            throw new IllegalArgumentException("secret for jwt key " + kid + " must not be empty");
+        }
+        return Keys.hmacShaKeyFor(secret.getBytes());
+    }
+
+    private record KeySet(String activeKid, Map<String, SecretKey> keys, JwtParser parser) {
+
+        static KeySet of(String activeKid, Map<String, SecretKey> keys) {
+            Map<String, SecretKey> snapshot = Map.copyOf(keys);
+            JwtParser parser = Jwts.parser()
+                    .keyLocator(new LocatorAdapter<Key>() {
+                        @Override
+                        protected Key locate(JwsHeader header) {
+                            /* tokens issued before key rotation carry no kid and were signed with the active key */
+                            String kid = header.getKeyId() != null ? header.getKeyId() : activeKid;
+                            SecretKey key = snapshot.get(kid);
+                            if (key == null) throw new JwtException("unknown jwt key id " + kid);
+                            return key;
+                        }
+                    })
+                    .build();
+            return new KeySet(activeKid, snapshot, parser);
+        }
+    }
+}
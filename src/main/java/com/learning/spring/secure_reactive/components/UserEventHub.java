@@ -0,0 +1,130 @@
+package com.learning.spring.secure_reactive.components;
+
+import com.learning.spring.secure_reactive.models.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Fan-out of user events to stream subscribers. Every subscriber gets its own buffer of users.stream.buffer-size
+ * events, so a slow client only affects itself: once its buffer is full either its oldest events are dropped or it
+ * is disconnected (users.stream.overflow). The last users.stream.replay-size events are kept so a reconnecting
+ * client can resume after the last event id it received.
+ */
+@Component
+@Slf4j
+public class UserEventHub {
+
+    public enum OverflowPolicy {DROP_OLDEST, DISCONNECT}
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${users.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${users.stream.overflow:DROP_OLDEST}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${users.stream.replay-size:100}")
+    private int replaySize;
+
+    /* publishing, replay and registration share one lock so every subscriber sees events once and in sequence order */
+    private final Object lock = new Object();
+    private final Set<Sinks.Many<Event>> subscribers = ConcurrentHashMap.newKeySet();
+    private ArrayDeque<Event> replay;
+    private long sequence;
+
+    private Counter publishedEvents;
+    private Counter droppedEvents;
+    private Counter disconnectedSubscribers;
+    private Counter emitFailures;
+
+    public UserEventHub(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        this.replay = new ArrayDeque<>(replaySize);
+        Gauge.builder("users.stream.subscribers", subscribers, Set::size)
+                .description("Open user stream subscriptions")
+                .register(meterRegistry);
+        this.publishedEvents = Counter.builder("users.stream.published")
+                .description("Events published to the stream subscribers")
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("users.stream.dropped")
+                .description("Events dropped from the buffer of a slow subscriber")
+                .register(meterRegistry);
+        this.disconnectedSubscribers = Counter.builder("users.stream.disconnected")
+                .description("Subscribers disconnected because their buffer overflowed")
+                .register(meterRegistry);
+        this.emitFailures = Counter.builder("users.stream.emit.failures")
+                .description("Events that could not be handed to a subscriber")
+                .register(meterRegistry);
+    }
+
+    public void publish(User user) {
+        synchronized (lock) {
+            Event event = new Event(++sequence, user);
+            publishedEvents.increment();
+            if (replaySize > 0) {
+                if (replay.size() == replaySize) replay.removeFirst();
+                replay.addLast(event);
+            }
+            for (Sinks.Many<Event> subscriber : subscribers) {
+                Sinks.EmitResult result = subscriber.tryEmitNext(event);
+                if (result.isFailure()) {
+                    emitFailures.increment();
+                    log.warn("Cannot emit user event {} : {}", event.id(), result);
+                    if (result == Sinks.EmitResult.FAIL_CANCELLED || result == Sinks.EmitResult.FAIL_TERMINATED) {
+                        subscribers.remove(subscriber);
+                    }
+                }
+            }
+        }
+    }
+
+    /* events published from now on, preceded by the retained events newer than lastEventId when it is given */
+    public Flux<Event> subscribe(Long lastEventId) {
+        return Flux.defer(() -> {
+            Sinks.Many<Event> sink = Sinks.many().unicast().onBackpressureBuffer();
+            synchronized (lock) {
+                if (lastEventId != null) {
+                    replay.stream()
+                            .filter(event -> event.id() > lastEventId)
+                            .forEach(sink::tryEmitNext);
+                }
+                subscribers.add(sink);
+            }
+
+            /* the unicast queue is drained straight into the bounded buffer, which is what limits memory */
+            return sink.asFlux()
+                    .onBackpressureBuffer(bufferSize, this::onOverflow, overflowPolicy == OverflowPolicy.DISCONNECT
+                            ? BufferOverflowStrategy.ERROR
+                            : BufferOverflowStrategy.DROP_OLDEST)
+                    .doFinally(signal -> subscribers.remove(sink));
+        });
+    }
+
+    private void onOverflow(Event dropped) {
+        if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+            disconnectedSubscribers.increment();
+        } else {
+            droppedEvents.increment();
+        }
+    }
+
+    public record Event(long id, User user) {
+    }
+}
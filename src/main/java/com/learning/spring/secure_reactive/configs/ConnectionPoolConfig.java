@@ -0,0 +1,102 @@
+package com.learning.spring.secure_reactive.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.reactivestreams.Publisher;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*
+ * The pool itself is sized by spring.r2dbc.pool.*, and Boot publishes its occupancy as r2dbc.pool.acquired,
+ * allocated, idle and pending. This adds the time callers wait for a connection and opens the minimum connections
+ * before the application reports ready.
+ */
+@Configuration
+@Slf4j
+public class ConnectionPoolConfig {
+
+    @Value("${database.pool.warmup-timeout:10s}")
+    private Duration warmupTimeout;
+
+    /* static, so the post processor does not force early creation of this configuration */
+    @Bean
+    public static BeanPostProcessor connectionPoolMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ConnectionPoolMetricsPostProcessor(meterRegistry);
+    }
+
+    /* runners complete before the readiness state turns to ACCEPTING_TRAFFIC, so no request pays for a connect */
+    @Bean
+    public ApplicationRunner connectionPoolWarmup(ObjectProvider<ConnectionPool> connectionPools) {
+        return args -> connectionPools.orderedStream().forEach(this::warmup);
+    }
+
+    void warmup(ConnectionPool connectionPool) {
+        try {
+            Integer created = connectionPool.warmup().block(warmupTimeout);
+            log.info("Connection pool warmed up with {} new connections, {} allocated", created,
+                    connectionPool.getMetrics().map(PoolMetrics::allocatedSize).orElse(-1));
+        } catch (RuntimeException e) {
+            /* connections are then opened on demand */
+            log.warn("Cannot warm up connection pool : {}", e.getMessage());
+        }
+    }
+
+    /*
+     * Records r2dbc.pool.acquire from subscription to create() until a connection is handed over. The pool is proxied
+     * by class, so it is still a ConnectionPool for Boot's pool metrics and keeps its dispose method.
+     */
+    static class ConnectionPoolMetricsPostProcessor implements BeanPostProcessor {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        ConnectionPoolMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof ConnectionPool)) return bean;
+
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.setProxyTargetClass(true);
+            proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                Object result = invocation.proceed();
+                if (!invocation.getMethod().getName().equals("create") || !(result instanceof Publisher<?> acquire)) {
+                    return result;
+                }
+                /* stopped before the connection goes downstream, so the caller's work on it is not counted */
+                return Mono.defer(() -> {
+                    Timer.Sample sample = Timer.start(meterRegistry.getObject());
+                    AtomicBoolean stopped = new AtomicBoolean();
+                    return Mono.from(acquire)
+                            .doOnSuccess(connection -> stop(sample, stopped, beanName, "success"))
+                            .doOnError(e -> stop(sample, stopped, beanName, "error"))
+                            .doOnCancel(() -> stop(sample, stopped, beanName, "cancelled"));
+                });
+            });
+            return proxyFactory.getProxy();
+        }
+
+        private void stop(Timer.Sample sample, AtomicBoolean stopped, String pool, String outcome) {
+            if (!stopped.compareAndSet(false, true)) return;
+            sample.stop(Timer.builder("r2dbc.pool.acquire")
+                    .description("Time waited for a connection from the pool")
+                    .tag("name", pool)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry.getObject()));
+        }
+    }
+}
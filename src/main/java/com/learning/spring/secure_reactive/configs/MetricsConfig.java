@@ -0,0 +1,75 @@
+package com.learning.spring.secure_reactive.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+@Configuration
+public class MetricsConfig {
+
+    /* static, so the post processor does not force early creation of this configuration */
+    @Bean
+    public static BeanPostProcessor repositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new RepositoryMetricsPostProcessor(meterRegistry);
+    }
+
+    /*
+     * Wraps Spring Data repositories so each reactive query records repository.query, tagged with repository,
+     * method and outcome. The timer runs from subscription to termination, which is when the query actually runs.
+     */
+    static class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        RepositoryMetricsPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof Repository<?, ?>)) return bean;
+
+            ProxyFactory proxyFactory = new ProxyFactory(bean);
+            proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                Object result = invocation.proceed();
+                String method = invocation.getMethod().getName();
+                if (result instanceof Mono<?> mono) {
+                    return Mono.defer(() -> {
+                        Timer.Sample sample = Timer.start(meterRegistry.getObject());
+                        return mono.doFinally(signal -> stop(sample, beanName, method, signal));
+                    });
+                }
+                if (result instanceof Flux<?> flux) {
+                    return Flux.defer(() -> {
+                        Timer.Sample sample = Timer.start(meterRegistry.getObject());
+                        return flux.doFinally(signal -> stop(sample, beanName, method, signal));
+                    });
+                }
+                return result;
+            });
+            return proxyFactory.getProxy();
+        }
+
+        private void stop(Timer.Sample sample, String repository, String method, SignalType signal) {
+            sample.stop(Timer.builder("repository.query")
+                    .description("Time from subscription to completion of a repository query")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .tag("outcome", switch (signal) {
+                        case ON_COMPLETE -> "success";
+                        case ON_ERROR -> "error";
+                        default -> "cancelled";
+                    })
+                    .register(meterRegistry.getObject()));
+        }
+    }
+}
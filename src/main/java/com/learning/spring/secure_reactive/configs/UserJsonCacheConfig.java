@@ -0,0 +1,36 @@
+package com.learning.spring.secure_reactive.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learning.spring.secure_reactive.codecs.CachedUserJsonWriter;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/* opt-in, users.json-cache.enabled=true serves single users from pre-encoded JSON with a weak ETag */
+@Configuration
+@ConditionalOnProperty(name = "users.json-cache.enabled", havingValue = "true")
+public class UserJsonCacheConfig implements WebFluxConfigurer {
+
+    private final ObjectMapper objectMapper;
+    private final UserMapper userMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${users.json-cache.max-size:10000}")
+    private long maxSize;
+
+    public UserJsonCacheConfig(ObjectMapper objectMapper, UserMapper userMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.userMapper = userMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /* custom writers are consulted before the default Jackson writer */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new CachedUserJsonWriter(objectMapper, userMapper, maxSize, meterRegistry));
+    }
+}
@@ -1,11 +1,22 @@
 package com.learning.spring.secure_reactive.configs;
 
+import com.learning.spring.secure_reactive.models.RequestDeadline;
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.time.Duration;
 import java.util.List;
 
 @Configuration
@@ -14,14 +25,88 @@ public class WebClientConfig {
     @Value("${external.base.url}")
     private String baseUrl;
 
+    @Value("${external.http.pool.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${external.http.pool.pending-acquire-max-count:200}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${external.http.pool.pending-acquire-timeout:2s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${external.http.pool.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${external.http.pool.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${external.http.pool.evict-interval:30s}")
+    private Duration evictInterval;
+
+    @Value("${external.http.connect-timeout:1s}")
+    private Duration connectTimeout;
+
+    @Value("${external.http.response-timeout:5s}")
+    private Duration responseTimeout;
+
+    @Value("${external.http.h2c.enabled:false}")
+    private boolean h2cEnabled;
+
+    @Value("${external.http.h2c.max-concurrent-streams:100}")
+    private long h2cMaxConcurrentStreams;
+
+    /*
+     * Pool of outbound connections. Occupancy (active, idle, pending) and acquire latency are published under
+     * reactor.netty.connection.provider.* so acquire timeouts under bursts can be traced back to the pool.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider externalConnectionProvider() {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("external")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true);
+        if (h2cEnabled) {
+            /* with h2c each connection multiplexes many requests, so fewer connections are needed */
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                    .maxConnections(maxConnections)
+                    .maxConcurrentStreams(h2cMaxConcurrentStreams)
+                    .minConnections(1)
+                    .build());
+        }
+        return builder.build();
+    }
+
+    /* the Boot managed builder records http.client.requests for every call */
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder()
+    public WebClient webClient(WebClient.Builder webClientBuilder, ConnectionProvider externalConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(externalConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout)
+                .protocol(h2cEnabled ? HttpProtocol.H2C : HttpProtocol.HTTP11)
+                /* tag by path only, query strings carry user ids */
+                .metrics(true, uri -> uri.split("\\?", 2)[0]);
+
+        return webClientBuilder
                 .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeaders(httpHeaders -> {
                     httpHeaders.setContentType(MediaType.APPLICATION_JSON);
                     httpHeaders.setAccept(List.of(MediaType.APPLICATION_JSON));
                 })
+                .filter(forwardDeadline())
                 .build();
     }
+
+    /* tells the downstream service how much of the caller's budget is left */
+    private static ExchangeFilterFunction forwardDeadline() {
+        return (request, next) -> Mono.deferContextual(context -> RequestDeadline.from(context)
+                .map(deadline -> next.exchange(ClientRequest.from(request)
+                        .header(RequestDeadline.HEADER, String.valueOf(Math.max(1, deadline.remaining().toMillis())))
+                        .build()))
+                .orElseGet(() -> next.exchange(request)));
+    }
 }
@@ -2,6 +2,7 @@ package com.learning.spring.secure_reactive.controllers;
 
 import com.learning.spring.secure_reactive.middlewares.services.AuthenticationService;
 import com.learning.spring.secure_reactive.models.request.AuthRequest;
+import com.learning.spring.secure_reactive.models.request.RefreshTokenRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -11,6 +12,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 @RestController
 public class AuthController {
 
@@ -22,9 +25,21 @@ public class AuthController {
         return authRequestMono
                 .flatMap(authRequest ->
                         authenticationService.authentication(authRequest.getEmail(), authRequest.getPassword()))
-                .map(authenticationResultMap -> ResponseEntity.ok()
-                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + authenticationResultMap.get("token"))
-                        .header("UserId", authenticationResultMap.get("userId"))
-                        .build());
+                .map(this::toTokenResponse);
+    }
+
+    @PostMapping("/token/refresh")
+    public Mono<ResponseEntity<Object>> refresh(@RequestBody @Valid Mono<RefreshTokenRequest> refreshTokenRequestMono) {
+        return refreshTokenRequestMono
+                .flatMap(refreshTokenRequest -> authenticationService.refresh(refreshTokenRequest.getRefreshToken()))
+                .map(this::toTokenResponse);
+    }
+
+    private ResponseEntity<Object> toTokenResponse(Map<String, String> authenticationResultMap) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + authenticationResultMap.get("token"))
+                .header("UserId", authenticationResultMap.get("userId"))
+                .header("RefreshToken", authenticationResultMap.get("refreshToken"))
+                .build();
     }
 }
@@ -1,23 +1,31 @@
 package com.learning.spring.secure_reactive.controllers;
 
+import com.learning.spring.secure_reactive.models.PageCursor;
 import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.UserImportResult;
 import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import com.learning.spring.secure_reactive.repositories.UserExportRepository;
+import com.learning.spring.secure_reactive.services.UserImportService;
 import com.learning.spring.secure_reactive.services.UserService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebInputException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.net.URI;
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -27,6 +35,12 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserImportService userImportService;
+
+    @Value("${users.page.max-limit:1000}")
+    private int maxLimit;
+
     @PostMapping
     public Mono<ResponseEntity<User>> createUser(@RequestBody @Valid CreateUserRequest createUserRequest) {
         return userService.createUser(Mono.just(createUserRequest))
@@ -37,30 +51,84 @@ public class UserController {
                 );
     }
 
+    /* accepts a JSON array or NDJSON stream and streams back one result per record */
+    @PostMapping(value = "/batch",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserImportResult> createUsers(@RequestBody Flux<CreateUserRequest> createUserRequests) {
+        return userImportService.importUsers(createUserRequests);
+    }
+
     @GetMapping("/{userId}")
 //    @PreAuthorize("authentication.principal.equals(#userId.toString()) or hasRole('ROLE_ADMIN')")
     @PostAuthorize("returnObject.body!=null and (returnObject.body.id.toString().equals(authentication.principal))")
     public Mono<ResponseEntity<User>> getUserById(@PathVariable("userId") UUID userId,
-                                                  @RequestParam(name = "include", required = false) String include,
-                                                  @RequestHeader(name = "Authorization") String jwt) {
-        return userService.getUserById(userId, include, jwt)
+                                                  @RequestParam(name = "include", required = false) String include) {
+        return userService.getUserById(userId, include)
                 .map(user -> ResponseEntity.status(HttpStatus.OK).body(user))
                 .switchIfEmpty(Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).build()));
     }
 
+    /*
+     * Without "page" the list is keyset paginated: pass the Next-Cursor header of a response as "after" to read
+     * the following page. The page/limit offset mode is kept for existing clients.
+     */
     @GetMapping
-    public Flux<User> getAllUser(
-            @RequestParam(value = "page", defaultValue = "0") int page,
-            @RequestParam(value = "limit", defaultValue = "50") int limit
+    public Mono<ResponseEntity<Flux<User>>> getAllUser(
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(name = "include", required = false) String include
     ) {
-        if (page > 0) page = page - 1;
-        Pageable pageable = PageRequest.of(page, limit);
-        return userService.getAllUser(pageable);
+        if (limit < 1) {
+            return Mono.error(new ServerWebInputException("limit must be greater than zero"));
+        }
+        /* a keyset page is buffered to compute its cursor, so its size has to stay bounded */
+        if (limit > maxLimit) {
+            return Mono.error(new ServerWebInputException("limit must not be greater than " + maxLimit));
+        }
+
+        if (page != null) {
+            if (page > 0) page = page - 1;
+            Pageable pageable = PageRequest.of(page, limit);
+            return Mono.just(ResponseEntity.ok(userService.getAllUser(pageable, include)));
+        }
+
+        UUID afterId;
+        try {
+            afterId = after == null || after.isBlank() ? null : PageCursor.decode(after);
+        } catch (IllegalArgumentException e) {
+            return Mono.error(new ServerWebInputException("Invalid cursor"));
+        }
+
+        return userService.getAllUserAfter(afterId, limit, include)
+                .collectList()
+                .map(users -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if (users.size() == limit) {
+                        response.header("Next-Cursor", PageCursor.encode(users.get(users.size() - 1).getId()));
+                    }
+                    return response.body(Flux.fromIterable(users));
+                });
+    }
+
+    /* streams every user as NDJSON or as an incrementally written JSON array, optionally limited to some fields */
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<User> exportUsers(@RequestParam(value = "fields", required = false) List<String> fields) {
+        if (fields != null && !UserExportRepository.EXPORTABLE_COLUMNS.keySet().containsAll(fields)) {
+            return Flux.error(new ServerWebInputException("fields must be within " + UserExportRepository.EXPORTABLE_COLUMNS.keySet()));
+        }
+        return userService.exportUsers(fields);
     }
 
     /* demo for api endpoint for server-sent event */
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<User> streamUser() {
-        return userService.streamUser();
+    public Flux<ServerSentEvent<?>> streamUser(@RequestParam(name = "include", required = false) String include,
+                                               @RequestParam(name = "domain", required = false) String domain,
+                                               @RequestParam(name = "batch", defaultValue = "false") boolean batch,
+                                               @RequestHeader(name = "Authorization", required = false) String jwt,
+                                               @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        /* the stream is public; an invalid bearer token is rejected before this point, so one here is authenticated */
+        return userService.streamUser(include, jwt != null && jwt.startsWith("Bearer "), lastEventId, domain, batch);
     }
 }
@@ -1,7 +1,9 @@
 package com.learning.spring.secure_reactive.exceptions;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authorization.AuthorizationDeniedException;
@@ -9,13 +11,18 @@ import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    @Value("${security.password-hashing.retry-after-seconds:1}")
+    private String retryAfterSeconds;
+
     @ExceptionHandler(DuplicateKeyException.class)
     public Mono<ErrorResponse> handleDuplicateKeyException(DuplicateKeyException exception) {
         return Mono.just(ErrorResponse.builder(exception, HttpStatus.CONFLICT, exception.getMessage()).build());
@@ -26,6 +33,11 @@ public class GlobalExceptionHandler {
         return Mono.just(ErrorResponse.builder(exception, HttpStatus.INTERNAL_SERVER_ERROR, exception.getMessage()).build());
     }
 
+    @ExceptionHandler(ResponseStatusException.class)
+    public Mono<ErrorResponse> handleResponseStatusException(ResponseStatusException exception) {
+        return Mono.just(exception);
+    }
+
     @ExceptionHandler(WebExchangeBindException.class)
     public Mono<ErrorResponse> handleWebExchangeBindException(WebExchangeBindException exception) {
         String errorMessage = exception.getBindingResult().getAllErrors().stream()
@@ -39,6 +51,13 @@ public class GlobalExceptionHandler {
         return Mono.just(ErrorResponse.builder(exception, HttpStatus.UNAUTHORIZED, exception.getMessage()).build());
     }
 
+    @ExceptionHandler(RejectedExecutionException.class)
+    public Mono<ErrorResponse> handleRejectedExecutionException(RejectedExecutionException exception) {
+        return Mono.just(ErrorResponse.builder(exception, HttpStatus.SERVICE_UNAVAILABLE, "Server is busy, please retry later")
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .build());
+    }
+
     @ExceptionHandler(AuthorizationDeniedException.class)
     public Mono<ErrorResponse> handleAuthorizationDeniedException(AuthorizationDeniedException exception) {
         return Mono.just(ErrorResponse.builder(exception, HttpStatus.FORBIDDEN, exception.getMessage()).build());
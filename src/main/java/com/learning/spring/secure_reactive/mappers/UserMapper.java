@@ -0,0 +1,29 @@
+package com.learning.spring.secure_reactive.mappers;
+
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.entity.UserEntity;
+import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.ReportingPolicy;
+
+/*
+ * Mappings between the user entity, the API model and the create request. The implementation is generated at
+ * compile time as plain getter/setter calls, so mapping streamed rows does no reflection. An unmapped target
+ * property fails the build instead of silently staying null.
+ */
+@Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.ERROR)
+public interface UserMapper {
+
+    @Mapping(target = "albums", ignore = true)
+    User toModel(UserEntity userEntity);
+
+    /* a fresh instance, so a shared cached user is never mutated by its readers */
+    @Mapping(target = "albums", ignore = true)
+    User copy(User user);
+
+    /* the id is assigned on insert and the password is hashed by the caller */
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "password", ignore = true)
+    UserEntity toEntity(CreateUserRequest createUserRequest);
+}
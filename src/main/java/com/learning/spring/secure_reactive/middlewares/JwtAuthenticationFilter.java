@@ -1,6 +1,8 @@
 package com.learning.spring.secure_reactive.middlewares;
 
 import com.learning.spring.secure_reactive.components.JwtHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -13,13 +15,19 @@ import org.springframework.web.server.WebFilterChain;
 import reactor.core.publisher.Mono;
 
 import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public class JwtAuthenticationFilter implements WebFilter {
 
     private final JwtHandler jwtHandler;
+    private final Timer validTokenTimer;
+    private final Timer invalidTokenTimer;
 
-    public JwtAuthenticationFilter(JwtHandler jwtHandler) {
+    public JwtAuthenticationFilter(JwtHandler jwtHandler, MeterRegistry meterRegistry) {
         this.jwtHandler = jwtHandler;
+        this.validTokenTimer = verificationTimer(meterRegistry, "valid");
+        this.invalidTokenTimer = verificationTimer(meterRegistry, "invalid");
     }
 
     @Override
@@ -28,20 +36,29 @@ public class JwtAuthenticationFilter implements WebFilter {
 
         if (token == null) return chain.filter(exchange);
 
-        return validateToken(token)
-                .flatMap(isValid -> isValid ? authenticatedAndContinue(token, exchange, chain) : handleInvalidToken(exchange));
+        long start = System.nanoTime();
+        Optional<String> verified = jwtHandler.verifySubject(token);
+        (verified.isPresent() ? validTokenTimer : invalidTokenTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        return verified
+                .map(subject -> authenticatedAndContinue(subject, exchange, chain))
+                .orElseGet(() -> handleInvalidToken(exchange));
+    }
+
+    private static Timer verificationTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("jwt.verification")
+                .description("Time to verify the bearer token of a request")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
     }
 
-    private Mono<Void> authenticatedAndContinue(String token, ServerWebExchange exchange, WebFilterChain chain) {
-        return Mono.just(jwtHandler.extractTokenSubject(token))
-                .flatMap(subject -> {
-                    Authentication authentication = new UsernamePasswordAuthenticationToken(
-                            subject, null, Collections.emptyList()
-                    );
-                    return chain
-                            .filter(exchange)
-                            .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
-                });
+    private Mono<Void> authenticatedAndContinue(String subject, ServerWebExchange exchange, WebFilterChain chain) {
+        Authentication authentication = new UsernamePasswordAuthenticationToken(
+                subject, null, Collections.emptyList()
+        );
+        return chain
+                .filter(exchange)
+                .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication));
     }
 
     private Mono<Void> handleInvalidToken(ServerWebExchange exchange) {
@@ -57,8 +74,4 @@ public class JwtAuthenticationFilter implements WebFilter {
 
         return null;
     }
-
-    private Mono<Boolean> validateToken(String token) {
-        return jwtHandler.validateJwt(token);
-    }
 }
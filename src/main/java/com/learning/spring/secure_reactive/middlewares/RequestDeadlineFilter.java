@@ -0,0 +1,84 @@
+package com.learning.spring.secure_reactive.middlewares;
+
+import com.learning.spring.secure_reactive.models.RequestDeadline;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.result.method.RequestMappingInfo;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/*
+ * Puts the time budget of the request into the Reactor context. The budget comes from the X-Request-Timeout header
+ * (milliseconds, capped at requests.deadline.max) or defaults to requests.deadline.default. Event streams only get a
+ * deadline when the client asks for one; a request is a stream when it maps to a handler producing
+ * text/event-stream, whatever the client sent as Accept.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestDeadlineFilter implements WebFilter {
+
+    private final ObjectProvider<RequestMappingHandlerMapping> handlerMappings;
+
+    @Value("${requests.deadline.default:10s}")
+    private Duration defaultBudget;
+
+    @Value("${requests.deadline.max:60s}")
+    private Duration maxBudget;
+
+    /* resolved on first use, the handler mappings are created after the web filters */
+    private volatile List<RequestMappingInfo> eventStreamMappings;
+
+    public RequestDeadlineFilter(ObjectProvider<RequestMappingHandlerMapping> handlerMappings) {
+        this.handlerMappings = handlerMappings;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        Duration budget = requestedBudget(exchange);
+        if (budget == null) return chain.filter(exchange);
+
+        RequestDeadline deadline = RequestDeadline.after(budget);
+        return chain
+                .filter(exchange)
+                .contextWrite(deadline::writeTo);
+    }
+
+    private Duration requestedBudget(ServerWebExchange exchange) {
+        String header = exchange.getRequest().getHeaders().getFirst(RequestDeadline.HEADER);
+        if (StringUtils.hasText(header)) {
+            try {
+                long millis = Long.parseLong(header.trim());
+                if (millis > 0) return millis < maxBudget.toMillis() ? Duration.ofMillis(millis) : maxBudget;
+            } catch (NumberFormatException ignored) {
+                /* malformed budgets fall back to the default */
+            }
+        }
+
+        return isEventStream(exchange) ? null : defaultBudget;
+    }
+
+    /* only the few streaming mappings are matched here, the full lookup still happens once in the dispatcher */
+    private boolean isEventStream(ServerWebExchange exchange) {
+        List<RequestMappingInfo> mappings = eventStreamMappings;
+        if (mappings == null) {
+            mappings = handlerMappings.orderedStream()
+                    .flatMap(handlerMapping -> handlerMapping.getHandlerMethods().keySet().stream())
+                    .filter(info -> info.getProducesCondition().getProducibleMediaTypes().stream()
+                            .anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype))
+                    .toList();
+            eventStreamMappings = mappings;
+        }
+        return mappings.stream().anyMatch(info -> info.getMatchingCondition(exchange) != null);
+    }
+}
@@ -1,21 +1,28 @@
 package com.learning.spring.secure_reactive.middlewares.configs;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.scheduler.Scheduler;
 
 @Configuration
 public class AuthManagerConfig {
 
     @Bean
     public ReactiveAuthenticationManager reactiveAuthenticationManager(ReactiveUserDetailsService userDetailsService,
-                                                                       PasswordEncoder passwordEncoder) {
+                                                                       ReactiveUserDetailsPasswordService userDetailsPasswordService,
+                                                                       PasswordEncoder passwordEncoder,
+                                                                       @Qualifier("passwordHashingScheduler") Scheduler passwordHashingScheduler) {
         UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
                 new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
         authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setScheduler(passwordHashingScheduler);
+        authenticationManager.setUserDetailsPasswordService(userDetailsPasswordService);
         return authenticationManager;
     }
 }
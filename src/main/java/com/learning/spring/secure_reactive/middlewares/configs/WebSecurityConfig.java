@@ -2,6 +2,9 @@ package com.learning.spring.secure_reactive.middlewares.configs;
 
 import com.learning.spring.secure_reactive.components.JwtHandler;
 import com.learning.spring.secure_reactive.middlewares.JwtAuthenticationFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -11,30 +14,46 @@ import org.springframework.security.config.annotation.web.reactive.EnableWebFlux
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
 import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
 
+import java.net.InetSocketAddress;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity
 public class WebSecurityConfig {
 
+    private static final String BCRYPT_ID = "bcrypt";
+
+    @Value("${security.password.bcrypt-strength:10}")
+    private int bcryptStrength;
+
+    @Value("${management.server.port:-1}")
+    private int managementPort;
+
     @Bean
     SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
                                                   ReactiveAuthenticationManager reactiveAuthenticationManager,
-                                                  JwtHandler jwtHandler
+                                                  JwtHandler jwtHandler,
+                                                  MeterRegistry meterRegistry
     ) {
-        JwtAuthenticationFilter jwtAuthenticationFilter = new JwtAuthenticationFilter(jwtHandler);
+        JwtAuthenticationFilter jwtAuthenticationFilter = new JwtAuthenticationFilter(jwtHandler, meterRegistry);
         return http.authorizeExchange(authorizeExchange -> authorizeExchange
                         .pathMatchers(HttpMethod.POST, "/users").permitAll()
                         .pathMatchers(HttpMethod.POST, "/login").permitAll()
+                        .pathMatchers(HttpMethod.POST, "/token/refresh").permitAll()
                         .pathMatchers(HttpMethod.GET, "/users/stream").permitAll()
+                        .pathMatchers(HttpMethod.GET, "/actuator/health/**").permitAll()
+                        .matchers(onPort(managementPort)).permitAll()
                         .anyExchange()
                         .authenticated())
                 .cors(corsSpec -> corsSpec.configurationSource(corsConfigurationSource()))
@@ -47,8 +66,33 @@ public class WebSecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        return new TimedPasswordEncoder(delegatingPasswordEncoder(bcryptStrength), meterRegistry);
+    }
+
+    /*
+     * Hashes are stored as {bcrypt}$2a$<cost>$..., so every row records its algorithm and cost. Hashes written
+     * before the prefix existed are still matched as plain BCrypt. Any hash whose algorithm or cost differs from
+     * the configured target reports upgradeEncoding=true and is rewritten on the next successful login.
+     */
+    public static PasswordEncoder delegatingPasswordEncoder(int bcryptStrength) {
+        PasswordEncoder bcrypt = new CostAwareBCryptPasswordEncoder(bcryptStrength);
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(BCRYPT_ID, Map.of(BCRYPT_ID, bcrypt));
+        passwordEncoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return passwordEncoder;
+    }
+
+    /*
+     * Metrics are only served on the management port, which is bound to management.server.address (loopback by
+     * default) and so is not reachable from outside the host. Requests on the public port never match.
+     */
+    static ServerWebExchangeMatcher onPort(int port) {
+        return exchange -> {
+            InetSocketAddress localAddress = exchange.getRequest().getLocalAddress();
+            return port > 0 && localAddress != null && localAddress.getPort() == port
+                    ? ServerWebExchangeMatcher.MatchResult.match()
+                    : ServerWebExchangeMatcher.MatchResult.notMatch();
+        };
     }
 
     private CorsConfigurationSource corsConfigurationSource() {
@@ -62,4 +106,52 @@ public class WebSecurityConfig {
 
         return source;
     }
+
+    /* records password.encoder timings for hashing (registration, import) and matching (login) */
+    private static class TimedPasswordEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder delegate;
+        private final Timer encodeTimer;
+        private final Timer matchesTimer;
+
+        TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+            this.delegate = delegate;
+            this.encodeTimer = Timer.builder("password.encoder").tag("operation", "encode").register(meterRegistry);
+            this.matchesTimer = Timer.builder("password.encoder").tag("operation", "matches").register(meterRegistry);
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return encodeTimer.record(() -> delegate.encode(rawPassword));
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return Boolean.TRUE.equals(matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword)));
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+    }
+
+    /* BCryptPasswordEncoder only upgrades hashes weaker than its strength, this one also rehashes when the cost is lowered */
+    private static class CostAwareBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+        private final int strength;
+
+        CostAwareBCryptPasswordEncoder(int strength) {
+            super(strength);
+            this.strength = strength;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+                return false;
+            }
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != strength;
+        }
+    }
 }
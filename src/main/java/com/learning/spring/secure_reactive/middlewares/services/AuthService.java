@@ -1,9 +1,10 @@
 package com.learning.spring.secure_reactive.middlewares.services;
 
+import com.learning.spring.secure_reactive.models.UserPrincipal;
 import com.learning.spring.secure_reactive.repositories.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
@@ -11,7 +12,7 @@ import reactor.core.publisher.Mono;
 import java.util.ArrayList;
 
 @Service
-public class AuthService implements ReactiveUserDetailsService {
+public class AuthService implements ReactiveUserDetailsService, ReactiveUserDetailsPasswordService {
 
     @Autowired
     private UserRepository userRepository;
@@ -20,10 +21,23 @@ public class AuthService implements ReactiveUserDetailsService {
     public Mono<UserDetails> findByUsername(String username) {
         return userRepository
                 .findByEmail(username)
-                .map(userEntity -> User
-                        .withUsername(userEntity.getEmail())
-                        .password(userEntity.getPassword())
-                        .authorities(new ArrayList<>())
-                        .build());
+                .map(userEntity -> new UserPrincipal(
+                        userEntity.getId(),
+                        userEntity.getEmail(),
+                        userEntity.getPassword(),
+                        new ArrayList<>()));
+    }
+
+    /* called by the authentication manager after a successful login whose stored hash needs an upgrade */
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails user, String newPassword) {
+        UserPrincipal principal = (UserPrincipal) user;
+        return userRepository
+                .updatePassword(principal.getId(), newPassword)
+                .thenReturn(new UserPrincipal(
+                        principal.getId(),
+                        principal.getUsername(),
+                        newPassword,
+                        principal.getAuthorities()));
     }
 }
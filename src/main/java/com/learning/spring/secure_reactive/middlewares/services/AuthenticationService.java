@@ -6,4 +6,6 @@ import java.util.Map;
 
 public interface AuthenticationService {
     Mono<Map<String, String>> authentication(String username, String password);
+
+    Mono<Map<String, String>> refresh(String refreshToken);
 }
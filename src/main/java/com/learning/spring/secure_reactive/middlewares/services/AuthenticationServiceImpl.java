@@ -1,8 +1,7 @@
 package com.learning.spring.secure_reactive.middlewares.services;
 
 import com.learning.spring.secure_reactive.components.JwtHandler;
-import com.learning.spring.secure_reactive.models.entity.UserEntity;
-import com.learning.spring.secure_reactive.repositories.UserRepository;
+import com.learning.spring.secure_reactive.models.UserPrincipal;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -11,15 +10,16 @@ import reactor.core.publisher.Mono;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
 @Service
 public class AuthenticationServiceImpl implements AuthenticationService {
 
     @Autowired
-    private UserRepository userRepository;
+    private JwtHandler jwtHandler;
 
     @Autowired
-    private JwtHandler jwtHandler;
+    private RefreshTokenService refreshTokenService;
 
     private final ReactiveAuthenticationManager reactiveAuthenticationManager;
 
@@ -31,18 +31,26 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     public Mono<Map<String, String>> authentication(String username, String password) {
         return reactiveAuthenticationManager
                 .authenticate(new UsernamePasswordAuthenticationToken(username, password))
-                .then(getUserDetails(username))
-                .map(this::createAuthResponse);
+                .map(authentication -> (UserPrincipal) authentication.getPrincipal())
+                .flatMap(user -> createAuthResponse(user.getId()));
     }
 
-    private Mono<UserEntity> getUserDetails(String username) {
-        return userRepository.findByEmail(username);
+    @Override
+    public Mono<Map<String, String>> refresh(String refreshToken) {
+        return refreshTokenService
+                .consume(refreshToken)
+                .flatMap(this::createAuthResponse);
     }
 
-    private Map<String, String> createAuthResponse(UserEntity user) {
-        Map<String, String> result = new HashMap<>();
-        result.put("userId", user.getId().toString());
-        result.put("token", jwtHandler.generateJwtToken(user.getId().toString()));
-        return result;
+    private Mono<Map<String, String>> createAuthResponse(UUID userId) {
+        return refreshTokenService
+                .issue(userId)
+                .map(refreshToken -> {
+                    Map<String, String> result = new HashMap<>();
+                    result.put("userId", userId.toString());
+                    result.put("token", jwtHandler.generateJwtToken(userId.toString()));
+                    result.put("refreshToken", refreshToken);
+                    return result;
+                });
     }
 }
@@ -0,0 +1,102 @@
+package com.learning.spring.secure_reactive.middlewares.services;
+
+import com.learning.spring.secure_reactive.models.entity.RefreshTokenEntity;
+import com.learning.spring.secure_reactive.repositories.RefreshTokenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/*
+ * Opaque, single-use refresh tokens. Only the SHA-256 of a token is stored, so validating one is an indexed
+ * lookup on token_hash instead of a BCrypt check, and every use deletes the row and issues a new token.
+ */
+@Service
+@Slf4j
+public class RefreshTokenService {
+
+    private static final int TOKEN_BYTES = 32;
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Value("${jwt.refresh-token.ttl:30d}")
+    private Duration refreshTokenTtl;
+
+    @Value("${jwt.refresh-token.prune-interval:1h}")
+    private Duration pruneInterval;
+
+    private Disposable pruneTask;
+
+    public RefreshTokenService(RefreshTokenRepository refreshTokenRepository) {
+        this.refreshTokenRepository = refreshTokenRepository;
+    }
+
+    @PostConstruct
+    void startPruning() {
+        this.pruneTask = Flux.interval(pruneInterval, pruneInterval)
+                .concatMap(tick -> refreshTokenRepository.deleteExpired(now())
+                        .onErrorResume(e -> {
+                            log.error("Error pruning refresh tokens : {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stopPruning() {
+        if (pruneTask != null) pruneTask.dispose();
+    }
+
+    public Mono<String> issue(UUID userId) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        secureRandom.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshTokenEntity entity = new RefreshTokenEntity()
+                .setUserId(userId)
+                .setTokenHash(hash(refreshToken))
+                .setExpiresAt(now().plus(refreshTokenTtl));
+        return refreshTokenRepository.save(entity).thenReturn(refreshToken);
+    }
+
+    /* validates and invalidates the token, emitting the id of the user it was issued to */
+    public Mono<UUID> consume(String refreshToken) {
+        return refreshTokenRepository
+                .findByTokenHash(hash(refreshToken))
+                .filter(entity -> entity.getExpiresAt().isAfter(now()))
+                .filterWhen(entity -> refreshTokenRepository.deleteAndCount(entity.getId()).map(count -> count == 1))
+                .map(RefreshTokenEntity::getUserId)
+                .switchIfEmpty(Mono.error(new BadCredentialsException("Invalid refresh token")));
+    }
+
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+    private static String hash(String refreshToken) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(refreshToken.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
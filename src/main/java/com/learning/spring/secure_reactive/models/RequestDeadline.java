@@ -0,0 +1,35 @@
+package com.learning.spring.secure_reactive.models;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/* point in time (System.nanoTime based) after which the work done for a request is no longer useful */
+public record RequestDeadline(long expiresAtNanos) {
+
+    public static final String HEADER = "X-Request-Timeout";
+
+    private static final Class<RequestDeadline> CONTEXT_KEY = RequestDeadline.class;
+
+    public static RequestDeadline after(Duration budget) {
+        return new RequestDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Optional<RequestDeadline> from(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    public Context writeTo(Context context) {
+        return context.put(CONTEXT_KEY, this);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.learning.spring.secure_reactive.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserImportResult {
+
+    public enum Status { CREATED, INVALID, CONFLICT, FAILED }
+
+    private long index;
+    private Status status;
+    private User user;
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.learning.spring.secure_reactive.models;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/* UserDetails that keeps the user id loaded with the credentials, so a login needs a single lookup */
+@Getter
+public class UserPrincipal extends User {
+
+    private final UUID id;
+
+    public UserPrincipal(UUID id, String username, String password, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.id = id;
+    }
+}
@@ -0,0 +1,32 @@
+package com.learning.spring.secure_reactive.models.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Table(name = "refresh_tokens")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class RefreshTokenEntity {
+
+    @Id
+    private UUID id;
+
+    @Column("user_id")
+    private UUID userId;
+
+    @Column("token_hash")
+    private String tokenHash;
+
+    @Column("expires_at")
+    private LocalDateTime expiresAt;
+}
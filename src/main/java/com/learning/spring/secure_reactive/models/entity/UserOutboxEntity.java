@@ -0,0 +1,39 @@
+package com.learning.spring.secure_reactive.models.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Table(name = "user_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Accessors(chain = true)
+public class UserOutboxEntity {
+
+    @Id
+    private Long id;
+
+    @Column("user_id")
+    private UUID userId;
+
+    @Column("first_name")
+    private String firstName;
+
+    @Column("last_name")
+    private String lastName;
+
+    private String email;
+
+    private String origin;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,22 @@
+package com.learning.spring.secure_reactive.repositories;
+
+import com.learning.spring.secure_reactive.models.entity.RefreshTokenEntity;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public interface RefreshTokenRepository extends ReactiveCrudRepository<RefreshTokenEntity, UUID> {
+    Mono<RefreshTokenEntity> findByTokenHash(String tokenHash);
+
+    @Modifying
+    @Query("DELETE FROM refresh_tokens WHERE id = :id")
+    Mono<Integer> deleteAndCount(UUID id);
+
+    @Modifying
+    @Query("DELETE FROM refresh_tokens WHERE expires_at < :now")
+    Mono<Integer> deleteExpired(LocalDateTime now);
+}
@@ -0,0 +1,60 @@
+package com.learning.spring.secure_reactive.repositories;
+
+import com.learning.spring.secure_reactive.models.User;
+import io.r2dbc.spi.Row;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/* streams the users table for export, selecting only the requested columns and never the password hash */
+@Repository
+public class UserExportRepository {
+
+    public static final Map<String, String> EXPORTABLE_COLUMNS = exportableColumns();
+
+    private final DatabaseClient databaseClient;
+
+    public UserExportRepository(DatabaseClient databaseClient) {
+        this.databaseClient = databaseClient;
+    }
+
+    public Flux<User> streamAll(Collection<String> fields) {
+        List<String> selected = fields == null || fields.isEmpty()
+                ? List.copyOf(EXPORTABLE_COLUMNS.keySet())
+                : EXPORTABLE_COLUMNS.keySet().stream().filter(fields::contains).toList();
+        String columns = String.join(", ", selected.stream().map(EXPORTABLE_COLUMNS::get).toList());
+
+        return databaseClient.sql("SELECT " + columns + " FROM users ORDER BY id")
+                .map((row, metadata) -> toUser(row, selected))
+                .all();
+    }
+
+    private static User toUser(Row row, List<String> selected) {
+        User user = new User();
+        for (String field : selected) {
+            switch (field) {
+                case "id" -> user.setId(row.get("id", UUID.class));
+                case "firstName" -> user.setFirstName(row.get("first_name", String.class));
+                case "lastName" -> user.setLastName(row.get("last_name", String.class));
+                case "email" -> user.setEmail(row.get("email", String.class));
+                default -> throw new IllegalArgumentException("Unknown field " + field);
+            }
+        }
+        return user;
+    }
+
+    private static Map<String, String> exportableColumns() {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("id", "id");
+        columns.put("firstName", "first_name");
+        columns.put("lastName", "last_name");
+        columns.put("email", "email");
+        return columns;
+    }
+}
@@ -0,0 +1,31 @@
+package com.learning.spring.secure_reactive.repositories;
+
+import com.learning.spring.secure_reactive.models.entity.UserOutboxEntity;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface UserOutboxRepository extends ReactiveCrudRepository<UserOutboxEntity, Long> {
+
+    /* copies the public columns of freshly inserted users, so callers need not carry the rows around */
+    @Modifying
+    @Query("INSERT INTO user_outbox (user_id, first_name, last_name, email, origin, created_at) "
+            + "SELECT id, first_name, last_name, email, :origin, :createdAt FROM users WHERE id IN (:userIds)")
+    Mono<Integer> appendUsers(Collection<UUID> userIds, String origin, LocalDateTime createdAt);
+
+    @Query("SELECT * FROM user_outbox WHERE id > :after ORDER BY id LIMIT :limit")
+    Flux<UserOutboxEntity> findAllByIdAfterOrderById(long after, int limit);
+
+    @Query("SELECT COALESCE(MAX(id), 0) FROM user_outbox")
+    Mono<Long> findMaxId();
+
+    @Modifying
+    @Query("DELETE FROM user_outbox WHERE created_at < :before")
+    Mono<Integer> deleteCreatedBefore(LocalDateTime before);
+}
@@ -1,14 +1,35 @@
 package com.learning.spring.secure_reactive.repositories;
 
+import com.learning.spring.secure_reactive.models.User;
 import com.learning.spring.secure_reactive.models.entity.UserEntity;
-import org.springframework.data.domain.Pageable;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
 
+/*
+ * Read paths select only the public columns and map them straight into the response model. The password hash is
+ * only read by findByEmail, for login.
+ */
 public interface UserRepository extends ReactiveCrudRepository<UserEntity, UUID> {
-    Flux<UserEntity> findAllBy(Pageable pageable);
     Mono<UserEntity> findByEmail(String email);
+
+    @Query("SELECT id, first_name, last_name, email FROM users WHERE id = :id")
+    Mono<User> findUserById(UUID id);
+
+    @Query("SELECT id, first_name, last_name, email FROM users ORDER BY id LIMIT :limit OFFSET :offset")
+    Flux<User> findUsers(int limit, long offset);
+
+    @Query("SELECT id, first_name, last_name, email FROM users ORDER BY id LIMIT :limit")
+    Flux<User> findAllOrderById(int limit);
+
+    @Query("SELECT id, first_name, last_name, email FROM users WHERE id > :after ORDER BY id LIMIT :limit")
+    Flux<User> findAllByIdAfterOrderById(UUID after, int limit);
+
+    @Modifying
+    @Query("UPDATE users SET password = :password WHERE id = :id")
+    Mono<Integer> updatePassword(UUID id, String password);
 }
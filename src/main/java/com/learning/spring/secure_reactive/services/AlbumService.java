@@ -0,0 +1,335 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learning.spring.secure_reactive.models.Album;
+import com.learning.spring.secure_reactive.models.RequestDeadline;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/*
+ * Client of the album service. Album lists are cached per user: concurrent misses for the same user share one
+ * in-flight call, and an entry older than albums.cache.refresh-after is still served while a single background
+ * call refreshes it.
+ *
+ * Every outbound call passes the "albums" bulkhead, which caps in-flight calls, and the "albums" circuit breaker,
+ * which opens on failure or slow-call rates (resilience4j.* properties). Rejected calls fail immediately and the
+ * caller falls back to users without albums.
+ *
+ * Single-user fetches are hedged: when the first call has not answered within the albums.hedge.percentile latency
+ * of recent calls, a second call is sent and the first response wins, cancelling the other. Callers never wait
+ * past the RequestDeadline found in the Reactor context, while calls that fill the cache are bounded by
+ * requests.deadline.default since other callers may be waiting on them.
+ *
+ * Entries are shared by every caller, so calls are made with a token of this service rather than the token of
+ * whichever caller missed first. It is signed with albums.client.secret, not a user signing key, and is issued for
+ * the "albums" audience, which this application's own authentication refuses.
+ */
+@Service
+@Slf4j
+public class AlbumService {
+
+    private static final String ALBUMS = "albums";
+
+
+    private final WebClient webClient;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${albums.client.secret}")
+    private String clientSecret;
+
+    @Value("${albums.client.subject:secure-reactive}")
+    private String clientSubject;
+
+    @Value("${albums.client.token-ttl:10m}")
+    private Duration serviceTokenTtl;
+
+    @Value("${albums.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${albums.cache.ttl:5m}")
+    private Duration cacheTtl;
+
+    @Value("${albums.cache.refresh-after:30s}")
+    private Duration cacheRefreshAfter;
+
+    @Value("${albums.batch.timeout:2s}")
+    private Duration batchTimeout;
+
+    @Value("${albums.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${albums.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${albums.hedge.min-delay:20ms}")
+    private Duration hedgeMinDelay;
+
+    @Value("${albums.hedge.max-delay:500ms}")
+    private Duration hedgeMaxDelay;
+
+    @Value("${requests.deadline.default:10s}")
+    private Duration loadDeadline;
+
+    private AsyncCache<UUID, CachedAlbums> albumsCache;
+    private final Set<UUID> refreshing = ConcurrentHashMap.newKeySet();
+    private Timer fetchTimer;
+    private Counter hedgedCalls;
+    private SecretKey clientKey;
+    private volatile ServiceToken serviceToken;
+
+    public AlbumService(WebClient webClient,
+                        CircuitBreakerRegistry circuitBreakerRegistry,
+                        BulkheadRegistry bulkheadRegistry,
+                        MeterRegistry meterRegistry) {
+        this.webClient = webClient;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(ALBUMS);
+        this.bulkhead = bulkheadRegistry.bulkhead(ALBUMS);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!StringUtils.hasText(clientSecret)) {
+            throw new IllegalStateException("albums.client.secret must not be empty");
+        }
+        this.clientKey = Keys.hmacShaKeyFor(clientSecret.getBytes(StandardCharsets.UTF_8));
+        this.albumsCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .buildAsync();
+        this.fetchTimer = Timer.builder("albums.fetch")
+                .description("Latency of successful single-user album calls")
+                .publishPercentiles(hedgePercentile)
+                .register(meterRegistry);
+        this.hedgedCalls = Counter.builder("albums.hedged")
+                .description("Album calls sent as a hedge of a slow call")
+                .register(meterRegistry);
+    }
+
+    public Mono<List<Album>> getUserAlbums(UUID userId) {
+        return Mono.fromFuture(() -> albumsCache.get(userId, (id, executor) -> fetchAlbumsHedged(id)
+                        .map(CachedAlbums::new)
+                        .transform(this::sharedLoad)
+                        .toFuture()), true)
+                .transform(this::withinDeadline)
+                .doOnNext(cached -> {
+                    if (cached.isOlderThan(cacheRefreshAfter)) refreshInBackground(userId);
+                })
+                .map(CachedAlbums::albums);
+    }
+
+    /* albums of several users; ids missing from the cache are fetched together with one multi-id request */
+    public Mono<Map<UUID, List<Album>>> getAlbumsForUsers(List<UUID> userIds) {
+        return Mono.fromFuture(() -> albumsCache.getAll(userIds, (missingIds, executor) -> fetchAlbums(missingIds)
+                        .map(albumsByUser -> {
+                            Map<UUID, CachedAlbums> loaded = new HashMap<>();
+                            missingIds.forEach(id -> loaded.put(id, new CachedAlbums(albumsByUser.getOrDefault(id, List.of()))));
+                            return loaded;
+                        })
+                        .transform(this::sharedLoad)
+                        .toFuture()), true)
+                .transform(this::withinDeadline)
+                .map(cached -> {
+                    Map<UUID, List<Album>> albumsByUser = new HashMap<>();
+                    cached.forEach((id, albums) -> albumsByUser.put(id, albums.albums()));
+                    return albumsByUser;
+                });
+    }
+
+    private void refreshInBackground(UUID userId) {
+        if (!refreshing.add(userId)) return;
+
+        fetchAlbums(userId)
+                .transform(this::sharedLoad)
+                .doFinally(signal -> refreshing.remove(userId))
+                .subscribe(
+                        albums -> albumsCache.put(userId, CompletableFuture.completedFuture(new CachedAlbums(albums))),
+                        e -> log.warn("Error refreshing albums for user {} : {}", userId, e.getMessage()));
+    }
+
+    /*
+     * Skips hedging while the breaker is not closed, a hedge would only be rejected as well. The hedge timer is
+     * cancelled as soon as the first call answers, so a fast failure is returned at once instead of being hedged.
+     * Once both calls are running, a failure of either one only counts when the other has failed too.
+     */
+    private Mono<List<Album>> fetchAlbumsHedged(UUID userId) {
+        if (!hedgeEnabled || circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            return fetchAlbums(userId);
+        }
+
+        return Mono.defer(() -> {
+            AtomicBoolean hedged = new AtomicBoolean();
+            AtomicBoolean failedOnce = new AtomicBoolean();
+            Function<Throwable, Mono<List<Album>>> unlessOtherRunning = e ->
+                    hedged.get() && failedOnce.compareAndSet(false, true) ? Mono.empty() : Mono.error(e);
+
+            Mono<List<Album>> primary = fetchAlbums(userId).onErrorResume(unlessOtherRunning);
+            Mono<List<Album>> hedge = Mono.delay(hedgeDelay())
+                    .flatMap(tick -> {
+                        hedged.set(true);
+                        hedgedCalls.increment();
+                        return fetchAlbums(userId).onErrorResume(unlessOtherRunning);
+                    });
+            /* the first value wins and cancels the other call, an error cancels the pending hedge timer */
+            return Flux.merge(primary, hedge).next();
+        });
+    }
+
+    /* configured percentile of recent call latencies, bounded by min and max delay (max until there are samples) */
+    private Duration hedgeDelay() {
+        ValueAtPercentile[] percentiles = fetchTimer.takeSnapshot().percentileValues();
+        long delay = percentiles.length == 0 ? 0 : (long) percentiles[0].value(TimeUnit.NANOSECONDS);
+        if (delay <= 0) return hedgeMaxDelay;
+        return Duration.ofNanos(Math.min(hedgeMaxDelay.toNanos(), Math.max(hedgeMinDelay.toNanos(), delay)));
+    }
+
+    private Mono<List<Album>> fetchAlbums(UUID userId) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .port(8084)
+                        .path("/albums")
+                        .queryParam("userId", userId)
+                        .build())
+                .header("Authorization", serviceAuthorization())
+                .retrieve()
+                .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> {
+                    return Mono.error(new RuntimeException("Albums not found for user"));
+                })
+                .onStatus(HttpStatusCode::is5xxServerError, clientResponse -> {
+                    return Mono.error(new RuntimeException("Server error while fetching albums"));
+                })
+                .bodyToFlux(Album.class)
+                .collectList()
+                .transformDeferred(call -> Mono.defer(() -> {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    return call.doOnNext(albums -> sample.stop(fetchTimer));
+                }))
+                .transformDeferred(this::protect)
+                .transform(this::withinDeadline);
+    }
+
+    private Mono<Map<UUID, List<Album>>> fetchAlbums(Set<? extends UUID> userIds) {
+        return webClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .port(8084)
+                        .path("/albums")
+                        .queryParam("userId", userIds.toArray())
+                        .build())
+                .header("Authorization", serviceAuthorization())
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, clientResponse -> {
+                    return Mono.error(new RuntimeException("Error while fetching albums of " + userIds.size() + " users"));
+                })
+                .bodyToFlux(Album.class)
+                .filter(album -> album.getUserId() != null)
+                .collectMultimap(Album::getUserId)
+                .map(albumsByUser -> {
+                    Map<UUID, List<Album>> result = new HashMap<>();
+                    albumsByUser.forEach((id, albums) -> result.put(id, List.copyOf(albums)));
+                    return result;
+                })
+                .timeout(batchTimeout)
+                .transformDeferred(this::protect)
+                .transform(this::withinDeadline);
+    }
+
+    private String serviceAuthorization() {
+        ServiceToken token = serviceToken;
+        /* renewed at half its lifetime, so a call in flight never carries an expired token */
+        if (token == null || token.isOlderThan(serviceTokenTtl.dividedBy(2))) {
+            Instant now = Instant.now();
+            String jwt = Jwts.builder()
+                    .subject(clientSubject)
+                    .audience().add(ALBUMS).and()
+                    .issuedAt(Date.from(now))
+                    .expiration(Date.from(now.plus(serviceTokenTtl)))
+                    .signWith(clientKey)
+                    .compact();
+            token = new ServiceToken("Bearer " + jwt, System.nanoTime());
+            serviceToken = token;
+        }
+        return token.authorization();
+    }
+
+    /* the bulkhead wraps the breaker so calls rejected for concurrency are not counted as album service failures */
+    private <T> Mono<T> protect(Mono<T> call) {
+        return call
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+
+    /*
+     * A cache load is shared by every caller waiting on its keys, so it runs under a deadline of its own rather than
+     * the first caller's. Each caller still stops waiting at its own deadline, the load carries on for the others.
+     */
+    private <T> Mono<T> sharedLoad(Mono<T> load) {
+        return load.contextWrite(context -> RequestDeadline.after(loadDeadline).writeTo(context));
+    }
+
+    /* outside the breaker, so running out of the caller's budget is not counted as an album service failure */
+    private <T> Mono<T> withinDeadline(Mono<T> call) {
+        return Mono.deferContextual(context -> RequestDeadline.from(context)
+                .map(deadline -> deadline.isExpired()
+                        ? Mono.<T>error(new TimeoutException("Request deadline exceeded"))
+                        : call.timeout(deadline.remaining()))
+                .orElse(call));
+    }
+
+    private record ServiceToken(String authorization, long issuedAt) {
+
+        boolean isOlderThan(Duration age) {
+            return System.nanoTime() - issuedAt > age.toNanos();
+        }
+    }
+
+    private record CachedAlbums(List<Album> albums, long fetchedAt) {
+
+        CachedAlbums(List<Album> albums) {
+            this(albums, System.nanoTime());
+        }
+
+        boolean isOlderThan(Duration age) {
+            return System.nanoTime() - fetchedAt > age.toNanos();
+        }
+    }
+}
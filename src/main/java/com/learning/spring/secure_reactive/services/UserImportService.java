@@ -0,0 +1,177 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.learning.spring.secure_reactive.components.UserEventHub;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.UserImportResult;
+import com.learning.spring.secure_reactive.models.entity.UserEntity;
+import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/*
+ * Streaming bulk import for POST /users/batch. Records are validated one by one, hashed concurrently on the
+ * password hashing scheduler and written with one multi-row INSERT per batch, in one transaction with the
+ * matching user_outbox rows. A batch that hits a constraint violation is retried row by row so every record
+ * still gets its own result.
+ */
+@Service
+@Slf4j
+public class UserImportService {
+
+    private static final String INSERT_PREFIX = "INSERT INTO users (id, first_name, last_name, email, password) VALUES ";
+
+    private final DatabaseClient databaseClient;
+    private final Validator validator;
+    private final PasswordEncoder passwordEncoder;
+    private final Scheduler passwordHashingScheduler;
+    private final UserEventHub userEventHub;
+    private final UserOutboxService userOutboxService;
+    private final TransactionalOperator transactionalOperator;
+    private final UserMapper userMapper;
+
+    @Value("${users.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${users.import.batch-max-wait:200ms}")
+    private Duration batchMaxWait;
+
+    @Value("${users.import.hash-concurrency:4}")
+    private int hashConcurrency;
+
+    public UserImportService(DatabaseClient databaseClient,
+                             Validator validator,
+                             PasswordEncoder passwordEncoder,
+                             @Qualifier("passwordHashingScheduler") Scheduler passwordHashingScheduler,
+                             UserEventHub userEventHub,
+                             UserOutboxService userOutboxService,
+                             TransactionalOperator transactionalOperator,
+                             UserMapper userMapper) {
+        this.databaseClient = databaseClient;
+        this.validator = validator;
+        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingScheduler = passwordHashingScheduler;
+        this.userEventHub = userEventHub;
+        this.userOutboxService = userOutboxService;
+        this.transactionalOperator = transactionalOperator;
+        this.userMapper = userMapper;
+    }
+
+    public Flux<UserImportResult> importUsers(Flux<CreateUserRequest> createUserRequests) {
+        return createUserRequests
+                .index()
+                .flatMapSequential(indexed -> prepare(indexed.getT1(), indexed.getT2()), hashConcurrency)
+                .bufferTimeout(batchSize, batchMaxWait)
+                .concatMap(this::insertBatch);
+    }
+
+    private Mono<PendingRow> prepare(long index, CreateUserRequest createUserRequest) {
+        Set<ConstraintViolation<CreateUserRequest>> violations = validator.validate(createUserRequest);
+        if (!violations.isEmpty()) {
+            String error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            return Mono.just(PendingRow.failed(index, UserImportResult.Status.INVALID, error));
+        }
+
+        return Mono.fromCallable(() -> userMapper.toEntity(createUserRequest)
+                        .setId(UUID.randomUUID())
+                        .setPassword(passwordEncoder.encode(createUserRequest.getPassword())))
+                .subscribeOn(passwordHashingScheduler)
+                .map(userEntity -> new PendingRow(index, userEntity, null))
+                .onErrorResume(e -> Mono.just(PendingRow.failed(index, UserImportResult.Status.FAILED, e.getMessage())));
+    }
+
+    private Flux<UserImportResult> insertBatch(List<PendingRow> rows) {
+        List<UserEntity> entities = rows.stream()
+                .filter(row -> row.entity() != null)
+                .map(PendingRow::entity)
+                .toList();
+        if (entities.isEmpty()) {
+            return Flux.fromIterable(rows).map(PendingRow::result);
+        }
+
+        return insertAll(entities)
+                .thenMany(Flux.fromIterable(rows).map(this::created))
+                .onErrorResume(DataIntegrityViolationException.class, e -> Flux.fromIterable(rows).concatMap(this::insertOne));
+    }
+
+    private Mono<Long> insertAll(List<UserEntity> entities) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        for (int i = 0; i < entities.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("(:id").append(i)
+                    .append(", :firstName").append(i)
+                    .append(", :lastName").append(i)
+                    .append(", :email").append(i)
+                    .append(", :password").append(i).append(')');
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString());
+        for (int i = 0; i < entities.size(); i++) {
+            UserEntity entity = entities.get(i);
+            spec = spec.bind("id" + i, entity.getId())
+                    .bind("firstName" + i, entity.getFirstName())
+                    .bind("lastName" + i, entity.getLastName())
+                    .bind("email" + i, entity.getEmail())
+                    .bind("password" + i, entity.getPassword());
+        }
+        return spec.fetch().rowsUpdated()
+                .flatMap(inserted -> userOutboxService
+                        .append(entities.stream().map(UserEntity::getId).toList())
+                        .thenReturn(inserted))
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<UserImportResult> insertOne(PendingRow row) {
+        if (row.entity() == null) return Mono.just(row.result());
+
+        return insertAll(List.of(row.entity()))
+                .thenReturn(row)
+                .map(this::created)
+                .onErrorResume(DataIntegrityViolationException.class, e -> Mono.just(new UserImportResult()
+                        .setIndex(row.index())
+                        .setStatus(UserImportResult.Status.CONFLICT)
+                        .setError("Email already exists")));
+    }
+
+    private UserImportResult created(PendingRow row) {
+        if (row.entity() == null) return row.result();
+
+        UserEntity entity = row.entity();
+        User user = userMapper.toModel(entity);
+        userEventHub.publish(user);
+        return new UserImportResult()
+                .setIndex(row.index())
+                .setStatus(UserImportResult.Status.CREATED)
+                .setUser(user);
+    }
+
+    private record PendingRow(long index, UserEntity entity, UserImportResult result) {
+
+        static PendingRow failed(long index, UserImportResult.Status status, String error) {
+            return new PendingRow(index, null, new UserImportResult()
+                    .setIndex(index)
+                    .setStatus(status)
+                    .setError(error));
+        }
+    }
+}
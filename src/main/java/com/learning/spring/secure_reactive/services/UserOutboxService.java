@@ -0,0 +1,149 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.learning.spring.secure_reactive.components.UserEventHub;
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.entity.UserOutboxEntity;
+import com.learning.spring.secure_reactive.repositories.UserOutboxRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * Transactional outbox of user-created events, so stream subscribers on every node see users created on any node.
+ * Writers append to user_outbox in the transaction of the insert and publish to the local hub themselves; each
+ * node tails the table from a high-water mark and relays rows written by other nodes to its hub.
+ *
+ * Ids are assigned at insert but become visible at commit, so a missing id may still show up. The relay waits
+ * up to users.outbox.gap-timeout for it before moving past, holding back every later event meanwhile. Rolled back
+ * inserts (duplicate email, failed import batch) leave gaps that never fill, so the timeout is kept on the order of
+ * a transaction: longer values cost that delay on every rollback, shorter ones risk skipping a slow commit.
+ */
+@Service
+@Slf4j
+public class UserOutboxService {
+
+    private final UserOutboxRepository userOutboxRepository;
+    private final UserEventHub userEventHub;
+
+    /* resolved at construction, so requests served before startup completes already append with an origin */
+    private final String nodeId;
+
+    @Value("${users.outbox.poll-interval:200ms}")
+    private Duration pollInterval;
+
+    @Value("${users.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${users.outbox.gap-timeout:1s}")
+    private Duration gapTimeout;
+
+    @Value("${users.outbox.retention:1h}")
+    private Duration retention;
+
+    @Value("${users.outbox.prune-interval:5m}")
+    private Duration pruneInterval;
+
+    /* only touched by the relay, whose polls never overlap */
+    private long highWaterMark = -1;
+    private long gapSince;
+
+    private Disposable relayTask;
+    private Disposable pruneTask;
+
+    public UserOutboxService(UserOutboxRepository userOutboxRepository,
+                             UserEventHub userEventHub,
+                             @Value("${users.outbox.node-id:}") String nodeId) {
+        this.userOutboxRepository = userOutboxRepository;
+        this.userEventHub = userEventHub;
+        this.nodeId = StringUtils.hasText(nodeId) ? nodeId : UUID.randomUUID().toString();
+    }
+
+    /* after startup, so the schema exists before the first poll */
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        this.relayTask = Flux.interval(pollInterval, pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> relayBatch()
+                        .expand(relayed -> relayed == batchSize ? relayBatch() : Mono.empty())
+                        .then()
+                        .onErrorResume(e -> {
+                            log.error("Error relaying user outbox : {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+        this.pruneTask = Flux.interval(pruneInterval, pruneInterval)
+                .concatMap(tick -> userOutboxRepository.deleteCreatedBefore(now().minus(retention))
+                        .onErrorResume(e -> {
+                            log.error("Error pruning user outbox : {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @PreDestroy
+    void stop() {
+        if (relayTask != null) relayTask.dispose();
+        if (pruneTask != null) pruneTask.dispose();
+    }
+
+    /* must run inside the transaction that inserted the users */
+    public Mono<Void> append(Collection<UUID> userIds) {
+        return userOutboxRepository.appendUsers(userIds, nodeId, now()).then();
+    }
+
+    /* relays the next rows after the high-water mark, emitting how many were consumed */
+    Mono<Integer> relayBatch() {
+        return Mono.defer(() -> {
+            if (highWaterMark < 0) {
+                /* a starting node only relays events written from now on */
+                return userOutboxRepository.findMaxId()
+                        .doOnNext(maxId -> highWaterMark = maxId)
+                        .thenReturn(0);
+            }
+            return userOutboxRepository
+                    .findAllByIdAfterOrderById(highWaterMark, batchSize)
+                    .collectList()
+                    .map(this::relay);
+        });
+    }
+
+    private int relay(List<UserOutboxEntity> rows) {
+        int relayed = 0;
+        for (UserOutboxEntity row : rows) {
+            if (row.getId() != highWaterMark + 1) {
+                if (gapSince == 0) gapSince = System.nanoTime();
+                if (System.nanoTime() - gapSince < gapTimeout.toNanos()) break;
+                log.warn("Skipping user outbox ids {} to {}", highWaterMark + 1, row.getId() - 1);
+            }
+            gapSince = 0;
+            highWaterMark = row.getId();
+            relayed++;
+            if (!nodeId.equals(row.getOrigin())) {
+                userEventHub.publish(new User()
+                        .setId(row.getUserId())
+                        .setFirstName(row.getFirstName())
+                        .setLastName(row.getLastName())
+                        .setEmail(row.getEmail()));
+            }
+        }
+        return relayed;
+    }
+
+    private static LocalDateTime now() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+}
@@ -1,24 +1,37 @@
 package com.learning.spring.secure_reactive.services;
 
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.learning.spring.secure_reactive.components.UserEventHub;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
 import com.learning.spring.secure_reactive.models.Album;
 import com.learning.spring.secure_reactive.models.User;
 import com.learning.spring.secure_reactive.models.entity.UserEntity;
 import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import com.learning.spring.secure_reactive.repositories.UserExportRepository;
 import com.learning.spring.secure_reactive.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
-import org.springframework.http.HttpStatusCode;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.core.scheduler.Schedulers;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 @Service
 @Slf4j
@@ -26,83 +39,174 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final WebClient webClient;
-    private final Sinks.Many<User> usersSink;
+    private final AlbumService albumService;
+    private final UserEventHub userEventHub;
+    private final Scheduler passwordHashingScheduler;
+    private final UserExportRepository userExportRepository;
+    private final UserOutboxService userOutboxService;
+    private final TransactionalOperator transactionalOperator;
+    private final UserMapper userMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${users.cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${users.cache.ttl:5m}")
+    private Duration cacheTtl;
+
+    @Value("${users.export.prefetch:256}")
+    private int exportPrefetch;
+
+    @Value("${albums.batch.size:50}")
+    private int albumBatchSize;
+
+    @Value("${albums.batch.window:100ms}")
+    private Duration albumBatchWindow;
+
+    @Value("${albums.batch.concurrency:4}")
+    private int albumBatchConcurrency;
+
+    @Value("${users.stream.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
+    @Value("${users.stream.batch.size:100}")
+    private int streamBatchSize;
+
+    @Value("${users.stream.batch.window:250ms}")
+    private Duration streamBatchWindow;
+
+    private AsyncCache<UUID, User> usersCache;
 
     public UserService(UserRepository userRepository,
                        PasswordEncoder passwordEncoder,
-                       WebClient webClient,
-                       Sinks.Many<User> usersSink) {
+                       AlbumService albumService,
+                       UserEventHub userEventHub,
+                       @Qualifier("passwordHashingScheduler") Scheduler passwordHashingScheduler,
+                       UserExportRepository userExportRepository,
+                       UserOutboxService userOutboxService,
+                       TransactionalOperator transactionalOperator,
+                       UserMapper userMapper,
+                       MeterRegistry meterRegistry) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.webClient = webClient;
-        this.usersSink = usersSink;
+        this.albumService = albumService;
+        this.userEventHub = userEventHub;
+        this.passwordHashingScheduler = passwordHashingScheduler;
+        this.userExportRepository = userExportRepository;
+        this.userOutboxService = userOutboxService;
+        this.transactionalOperator = transactionalOperator;
+        this.userMapper = userMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /*
+     * Profiles by id, read through on GET /users/{id}. Concurrent misses for the same id share one query, and users
+     * that do not exist are not cached. Entries hold only the public columns, so a password rehash leaves them valid;
+     * writes in this service put the new state. Hits, misses and evictions are published as cache.* tagged users.
+     */
+    @PostConstruct
+    void init() {
+        this.usersCache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .<UUID, User>buildAsync(), "users");
     }
 
     public Mono<User> createUser(Mono<CreateUserRequest> createUserRequestMono) {
         return createUserRequestMono
                 .flatMap(this::convertToEntity)
-                .flatMap(user -> userRepository.save(user))
+                .flatMap(user -> userRepository.save(user)
+                        .flatMap(saved -> userOutboxService.append(List.of(saved.getId())).thenReturn(saved))
+                        .as(transactionalOperator::transactional))
                 .mapNotNull(this::convertToModel)
-                .doOnSuccess(usersSink::tryEmitNext);
+                .doOnNext(user -> usersCache.put(user.getId(), CompletableFuture.completedFuture(userMapper.copy(user))))
+                .doOnNext(userEventHub::publish);
     }
 
-    public Mono<User> getUserById(UUID id, String include, String jwt) {
-        return userRepository
-                .findById(id)
-                .mapNotNull(this::convertToModel)
+    public Mono<User> getUserById(UUID id, String include) {
+        return Mono.fromFuture(() -> usersCache.get(id, (key, executor) -> userRepository.findUserById(key).toFuture()), true)
+                .map(userMapper::copy)
                 .flatMap(user -> {
-                    if (include != null && include.contains("albums")) {
-                        return includeUserAlbums(user, jwt);
+                    if (includesAlbums(include)) {
+                        return includeUserAlbums(user);
                     }
                     return Mono.just(user);
                 });
     }
 
-    public Flux<User> getAllUser(Pageable pageable) {
+    public Flux<User> getAllUser(Pageable pageable, String include) {
         return userRepository
-                .findAllBy(pageable)
-                .mapNotNull(this::convertToModel);
+                .findUsers(pageable.getPageSize(), pageable.getOffset())
+                .transform(users -> includesAlbums(include) ? includeUsersAlbums(users) : users);
+    }
+
+    /* keyset pagination: rows ordered by id, starting after the given id (or from the first row when null) */
+    public Flux<User> getAllUserAfter(UUID after, int limit, String include) {
+        Flux<User> users = after == null
+                ? userRepository.findAllOrderById(limit)
+                : userRepository.findAllByIdAfterOrderById(after, limit);
+        return users
+                .transform(models -> includesAlbums(include) ? includeUsersAlbums(models) : models);
     }
 
-    public Flux<User> streamUser() {
-        return usersSink.asFlux()
-                .publish()
-                .autoConnect(1);
+    /* rows are requested from the database only as fast as the client consumes the response */
+    public Flux<User> exportUsers(List<String> fields) {
+        return userExportRepository
+                .streamAll(fields)
+                .limitRate(exportPrefetch);
     }
 
-    private Mono<UserEntity> convertToEntity(CreateUserRequest createUserRequest) {
+    /*
+     * Live user events as SSE, optionally only users of one email domain. Ids allow resuming with Last-Event-ID and
+     * heartbeat comments keep idle connections open. In batch mode events are grouped by count or time window into
+     * one frame holding an array, identified by the id of its last event.
+     */
+    public Flux<ServerSentEvent<?>> streamUser(String include, boolean authenticated, Long lastEventId, String emailDomain, boolean batched) {
+        Flux<UserEventHub.Event> events = userEventHub.subscribe(lastEventId);
+        if (emailDomain != null) {
+            String suffix = "@" + emailDomain.toLowerCase(Locale.ROOT);
+            events = events.filter(event -> event.user().getEmail() != null
+                    && event.user().getEmail().toLowerCase(Locale.ROOT).endsWith(suffix));
+        }
+        if (includesAlbums(include) && authenticated) {
+            events = events
+                    .bufferTimeout(albumBatchSize, albumBatchWindow)
+                    .flatMapSequential(batch -> includeBatchAlbums(batch.stream().map(UserEventHub.Event::user).toList())
+                            .map(users -> IntStream.range(0, batch.size())
+                                    .mapToObj(i -> new UserEventHub.Event(batch.get(i).id(), users.get(i)))
+                                    .toList()), albumBatchConcurrency)
+                    .flatMapIterable(batch -> batch);
+        }
+
+        Flux<ServerSentEvent<?>> frames = batched
+                ? events
+                        .bufferTimeout(streamBatchSize, streamBatchWindow)
+                        .map(batchEvents -> ServerSentEvent.builder(batchEvents.stream().map(UserEventHub.Event::user).toList())
+                                .id(String.valueOf(batchEvents.get(batchEvents.size() - 1).id()))
+                                .build())
+                : events
+                        .map(event -> ServerSentEvent.builder(event.user()).id(String.valueOf(event.id())).build());
+        Flux<ServerSentEvent<?>> heartbeats = Flux.interval(heartbeatInterval)
+                .onBackpressureDrop()
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+        return frames.mergeWith(heartbeats);
+    }
+
+    Mono<UserEntity> convertToEntity(CreateUserRequest createUserRequest) {
         return Mono.fromCallable(() -> {
-            UserEntity userEntity = new UserEntity();
-            BeanUtils.copyProperties(createUserRequest, userEntity);
+            UserEntity userEntity = userMapper.toEntity(createUserRequest);
             userEntity.setPassword(passwordEncoder.encode(createUserRequest.getPassword()));
             return userEntity;
-        }).subscribeOn(Schedulers.boundedElastic());
+        }).subscribeOn(passwordHashingScheduler);
     }
 
-    private User convertToModel(UserEntity userEntity) {
-        User user = new User();
-        BeanUtils.copyProperties(userEntity, user);
-        return user;
+    User convertToModel(UserEntity userEntity) {
+        return userMapper.toModel(userEntity);
     }
 
-    private Mono<User> includeUserAlbums(User user, String jwt) {
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .port(8084)
-                        .path("/albums")
-                        .queryParam("userId", user.getId())
-                        .build())
-                .header("Authorization", jwt)
-                .retrieve()
-                .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> {
-                    return Mono.error(new RuntimeException("Albums not found for user"));
-                })
-                .onStatus(HttpStatusCode::is5xxServerError, clientResponse -> {
-                    return Mono.error(new RuntimeException("Server error while fetching albums"));
-                })
-                .bodyToFlux(Album.class)
-                .collectList()
+    private Mono<User> includeUserAlbums(User user) {
+        return albumService.getUserAlbums(user.getId())
                 .map(albums -> {
                     user.setAlbums(albums);
                     return user;
@@ -112,4 +216,36 @@ public class UserService {
                     return Mono.just(user);
                 });
     }
+
+    /*
+     * Groups users into batches (by count or time window for live streams), loads the albums of each batch with
+     * one request and emits the users in their original order.
+     */
+    private Flux<User> includeUsersAlbums(Flux<User> users) {
+        return users
+                .bufferTimeout(albumBatchSize, albumBatchWindow)
+                .flatMapSequential(this::includeBatchAlbums, albumBatchConcurrency)
+                .flatMapIterable(batch -> batch);
+    }
+
+    /* users are copied since stream events are shared between subscribers */
+    private Mono<List<User>> includeBatchAlbums(List<User> batch) {
+        return albumService
+                .getAlbumsForUsers(batch.stream().map(User::getId).distinct().toList())
+                .onErrorResume(e -> {
+                    log.error("Error fetching albums of {} users : {}", batch.size(), e.getMessage());
+                    return Mono.just(Map.of());
+                })
+                .map(albumsByUser -> batch.stream()
+                        .map(user -> withAlbums(user, albumsByUser.get(user.getId())))
+                        .toList());
+    }
+
+    private static User withAlbums(User user, List<Album> albums) {
+        return new User(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(), albums);
+    }
+
+    private static boolean includesAlbums(String include) {
+        return include != null && include.contains("albums");
+    }
 }
@@ -0,0 +1,48 @@
+package com.learning.spring.secure_reactive.tools;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.Arrays;
+
+/*
+ * Measures BCrypt hashing time on the current host and prints the highest cost that stays within a target
+ * duration, to be used as security.password.bcrypt-strength. Stored hashes with another cost are rehashed on
+ * the next login, so the cost can be changed without invalidating existing passwords.
+ *
+ * Usage: BCryptCostCalibrator [targetMillis=50] [samples=5]
+ */
+public class BCryptCostCalibrator {
+
+    private static final int MIN_COST = 4;
+    private static final int MAX_COST = 16;
+    private static final String SAMPLE_PASSWORD = "calibration-pw1";
+
+    public static void main(String[] args) {
+        long targetMillis = args.length > 0 ? Long.parseLong(args[0]) : 50;
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        int recommended = MIN_COST;
+        for (int cost = MIN_COST; cost <= MAX_COST; cost++) {
+            double millis = medianHashMillis(cost, samples);
+            System.out.printf("cost %2d : %8.1f ms%n", cost, millis);
+            if (millis > targetMillis) break;
+            recommended = cost;
+        }
+
+        System.out.printf("%nTarget %d ms -> security.password.bcrypt-strength=%d%n", targetMillis, recommended);
+    }
+
+    static double medianHashMillis(int cost, int samples) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(cost);
+        encoder.encode(SAMPLE_PASSWORD);
+
+        double[] timings = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            timings[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(timings);
+        return timings[samples / 2];
+    }
+}
@@ -0,0 +1,114 @@
+package com.learning.spring.secure_reactive.codecs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import com.learning.spring.secure_reactive.models.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CachedUserJsonWriterTest {
+
+    private static final ResolvableType USER_TYPE = ResolvableType.forClass(User.class);
+
+    private ObjectMapper objectMapper;
+    private CachedUserJsonWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = spy(new ObjectMapper());
+        writer = new CachedUserJsonWriter(objectMapper, Mappers.getMapper(UserMapper.class), 100, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void write_withSameUserTwice_return_cachedBytesAndSameETag() throws Exception {
+        User user = user();
+
+        MockServerHttpResponse first = write(Mono.just(user), MockServerHttpRequest.get("/users/" + user.getId()).build());
+        MockServerHttpResponse second = write(Mono.just(user), MockServerHttpRequest.get("/users/" + user.getId()).build());
+
+        assertEquals(first.getBodyAsString().block(), second.getBodyAsString().block());
+        assertEquals(objectMapper.writeValueAsString(user), second.getBodyAsString().block());
+        assertTrue(first.getHeaders().getETag().startsWith("W/\""));
+        assertEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_JSON, second.getHeaders().getContentType());
+        verify(objectMapper, times(1)).writeValueAsBytes(any());
+    }
+
+    @Test
+    void write_withChangedUser_return_newETag() {
+        User user = user();
+        MockServerHttpResponse first = write(Mono.just(user), MockServerHttpRequest.get("/").build());
+
+        user.setFirstName("Changed");
+        MockServerHttpResponse second = write(Mono.just(user), MockServerHttpRequest.get("/").build());
+
+        assertNotEquals(first.getHeaders().getETag(), second.getHeaders().getETag());
+        assertTrue(second.getBodyAsString().block().contains("Changed"));
+    }
+
+    @Test
+    void write_withMatchingIfNoneMatch_return_notModified() {
+        User user = user();
+        String etag = write(Mono.just(user), MockServerHttpRequest.get("/").build()).getHeaders().getETag();
+
+        MockServerHttpResponse response = write(Mono.just(user), MockServerHttpRequest.get("/")
+                .header(HttpHeaders.IF_NONE_MATCH, etag.substring(2))
+                .build());
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(etag, response.getHeaders().getETag());
+        StepVerifier.create(response.getBody()).verifyComplete();
+    }
+
+    @Test
+    void write_withUserAlbums_return_delegatedWithoutETag() {
+        User user = user().setAlbums(List.of());
+
+        MockServerHttpResponse response = write(Mono.just(user), MockServerHttpRequest.get("/").build());
+
+        assertNull(response.getHeaders().getETag());
+        assertTrue(response.getBodyAsString().block().contains("\"albums\":[]"));
+    }
+
+    @Test
+    void write_withUserFlux_return_jsonArray() {
+        MockServerHttpResponse response = write(Flux.just(user(), user()), MockServerHttpRequest.get("/").build());
+
+        assertNull(response.getHeaders().getETag());
+        assertTrue(response.getBodyAsString().block().startsWith("["));
+    }
+
+    private MockServerHttpResponse write(Publisher<User> body, MockServerHttpRequest request) {
+        MockServerHttpResponse response = new MockServerHttpResponse();
+        writer.write(body, USER_TYPE, USER_TYPE, MediaType.APPLICATION_JSON, request, response, Map.of()).block();
+        return response;
+    }
+
+    private static User user() {
+        return new User()
+                .setId(UUID.randomUUID())
+                .setFirstName("Anna")
+                .setLastName("Leeee")
+                .setEmail("anna@mail.com");
+    }
+}
@@ -0,0 +1,92 @@
+package com.learning.spring.secure_reactive.components;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class JwtHandlerTest {
+
+    private static final String SECRET = "====secretKey24354dfd54tedfklsd54df5424355ertdfgs====";
+
+    private JwtKeyRing jwtKeyRing;
+    private JwtHandler jwtHandler;
+
+    @BeforeEach
+    void setUp() {
+        jwtKeyRing = spy(new JwtKeyRing());
+        ReflectionTestUtils.setField(jwtKeyRing, "jwtSecret", SECRET);
+        jwtKeyRing.init();
+        jwtHandler = new JwtHandler(jwtKeyRing);
+        ReflectionTestUtils.setField(jwtHandler, "verifiedCacheMaxSize", 100L);
+        jwtHandler.init();
+    }
+
+    @Test
+    void verifySubject_withValidToken_return_subject() {
+        String token = jwtHandler.generateJwtToken("user-id");
+
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(token));
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(token));
+        StepVerifier.create(jwtHandler.validateJwt(token))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void verifySubject_withTamperedToken_return_empty() {
+        String token = jwtHandler.generateJwtToken("user-id");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+
+        assertTrue(jwtHandler.verifySubject(tampered).isEmpty());
+        StepVerifier.create(jwtHandler.validateJwt(tampered))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void verifySubject_withExpiredToken_return_empty() {
+        String token = Jwts.builder()
+                .subject("user-id")
+                .issuedAt(Date.from(Instant.now().minus(2, ChronoUnit.HOURS)))
+                .expiration(Date.from(Instant.now().minus(1, ChronoUnit.HOURS)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .compact();
+
+        assertTrue(jwtHandler.verifySubject(token).isEmpty());
+    }
+
+    @Test
+    void verifySubject_withRepeatedToken_return_subjectWithoutParsingAgain() {
+        String token = jwtHandler.generateJwtToken("user-id");
+
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(token));
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(token));
+        verify(jwtKeyRing, times(1)).parser();
+    }
+
+    @Test
+    void verifySubject_withRepeatedTokenWithoutSubject_return_empty() {
+        String token = Jwts.builder()
+                .issuedAt(Date.from(Instant.now()))
+                .expiration(Date.from(Instant.now().plus(1, ChronoUnit.HOURS)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .compact();
+
+        assertTrue(jwtHandler.verifySubject(token).isEmpty());
+        assertTrue(jwtHandler.verifySubject(token).isEmpty());
+    }
+}
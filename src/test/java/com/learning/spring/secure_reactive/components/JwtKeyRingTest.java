@@ -0,0 +1,75 @@
+package com.learning.spring.secure_reactive.components;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JwtKeyRingTest {
+
+    private static final String FIRST_SECRET = "first-secretKey24354dfd54tedfklsd54df5424355ertdfgs";
+    private static final String SECOND_SECRET = "second-secretKey24354dfd54tedfklsd54df5424355ertdfg";
+
+    @TempDir
+    Path tempDir;
+
+    private Path keysFile;
+    private JwtKeyRing jwtKeyRing;
+    private JwtHandler jwtHandler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        keysFile = tempDir.resolve("jwt-keys.properties");
+        Files.writeString(keysFile, "active-kid=k1\nkey.k1=" + FIRST_SECRET + "\n");
+
+        jwtKeyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(jwtKeyRing, "keysFile", keysFile.toString());
+        ReflectionTestUtils.setField(jwtKeyRing, "reloadInterval", Duration.ofHours(1));
+        jwtKeyRing.init();
+
+        jwtHandler = new JwtHandler(jwtKeyRing);
+        ReflectionTestUtils.setField(jwtHandler, "verifiedCacheMaxSize", 100L);
+        jwtHandler.init();
+    }
+
+    @Test
+    void reload_withNewActiveKey_keeps_previousTokensValid() throws IOException {
+        String oldToken = jwtHandler.generateJwtToken("user-id");
+
+        Files.writeString(keysFile, "active-kid=k2\nkey.k1=" + FIRST_SECRET + "\nkey.k2=" + SECOND_SECRET + "\n");
+        jwtKeyRing.reload();
+        String newToken = jwtHandler.generateJwtToken("user-id");
+
+        assertEquals("k2", jwtKeyRing.activeKid());
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(oldToken));
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(newToken));
+    }
+
+    @Test
+    void reload_withRetiredKey_rejects_tokensSignedWithIt() throws IOException {
+        String oldToken = jwtHandler.generateJwtToken("user-id");
+        assertEquals(Optional.of("user-id"), jwtHandler.verifySubject(oldToken));
+
+        Files.writeString(keysFile, "active-kid=k2\nkey.k2=" + SECOND_SECRET + "\n");
+        jwtKeyRing.reload();
+
+        assertTrue(jwtHandler.verifySubject(oldToken).isEmpty());
+    }
+
+    @Test
+    void reload_withInvalidFile_keeps_currentKeys() throws IOException {
+        Files.writeString(keysFile, "active-kid=missing\n");
+        jwtKeyRing.reload();
+
+        assertEquals("k1", jwtKeyRing.activeKid());
+    }
+}
@@ -0,0 +1,79 @@
+package com.learning.spring.secure_reactive.components;
+
+import com.learning.spring.secure_reactive.models.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Exceptions;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UserEventHubTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserEventHub userEventHub;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        userEventHub = new UserEventHub(meterRegistry);
+        ReflectionTestUtils.setField(userEventHub, "bufferSize", 2);
+        ReflectionTestUtils.setField(userEventHub, "overflowPolicy", UserEventHub.OverflowPolicy.DROP_OLDEST);
+        ReflectionTestUtils.setField(userEventHub, "replaySize", 3);
+        userEventHub.init();
+    }
+
+    @Test
+    void subscribe_withSlowSubscriber_return_latestEventsWithoutStallingOthers() {
+        StepVerifier.create(userEventHub.subscribe(null), 0)
+                .then(() -> {
+                    StepVerifier.create(userEventHub.subscribe(null).take(4))
+                            .then(() -> publish(4))
+                            .expectNextCount(4)
+                            .verifyComplete();
+                })
+                .thenRequest(2)
+                .expectNextMatches(event -> event.id() == 3)
+                .expectNextMatches(event -> event.id() == 4)
+                .thenCancel()
+                .verify(Duration.ofSeconds(1));
+        assertEquals(2, meterRegistry.get("users.stream.dropped").counter().count());
+        assertEquals(0, meterRegistry.get("users.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void subscribe_withDisconnectPolicy_return_overflowErrorForSlowSubscriber() {
+        ReflectionTestUtils.setField(userEventHub, "overflowPolicy", UserEventHub.OverflowPolicy.DISCONNECT);
+
+        StepVerifier.create(userEventHub.subscribe(null), 0)
+                .then(() -> publish(3))
+                .thenRequest(2)
+                .expectNextCount(2)
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(1));
+        assertEquals(1, meterRegistry.get("users.stream.disconnected").counter().count());
+    }
+
+    @Test
+    void subscribe_withLastEventId_return_retainedEventsAfterThatId() {
+        publish(5);
+
+        StepVerifier.create(userEventHub.subscribe(3L).take(3))
+                .expectNextMatches(event -> event.id() == 4)
+                .expectNextMatches(event -> event.id() == 5)
+                .then(() -> publish(1))
+                .expectNextMatches(event -> event.id() == 6)
+                .verifyComplete();
+    }
+
+    private void publish(int count) {
+        for (int i = 0; i < count; i++) {
+            userEventHub.publish(new User().setId(UUID.randomUUID()).setFirstName("user" + i));
+        }
+    }
+}
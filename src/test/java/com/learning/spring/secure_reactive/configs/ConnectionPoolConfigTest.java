@@ -0,0 +1,71 @@
+package com.learning.spring.secure_reactive.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.Connection;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionPoolConfigTest {
+
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    void setUp() {
+        connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(H2ConnectionFactory.inMemory("poolTestDb"))
+                .initialSize(3)
+                .maxSize(5)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionPool.dispose();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void connectionPoolMetricsPostProcessor_withAcquiredConnection_return_acquireTimerAndSamePoolType() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(meterRegistry);
+
+        Object timed = ConnectionPoolConfig.connectionPoolMetricsPostProcessor(provider)
+                .postProcessAfterInitialization(connectionPool, "connectionFactory");
+
+        assertInstanceOf(ConnectionPool.class, timed);
+        StepVerifier.create(Mono.usingWhen(((ConnectionPool) timed).create(), connection -> Mono.just(1), Connection::close))
+                .expectNext(1)
+                .verifyComplete();
+        assertEquals(1, meterRegistry.get("r2dbc.pool.acquire")
+                .tags("name", "connectionFactory", "outcome", "success")
+                .timer().count());
+    }
+
+    @Test
+    void warmup_withInitialSize_return_initialConnectionsAllocated() {
+        ConnectionPoolConfig connectionPoolConfig = new ConnectionPoolConfig();
+        ReflectionTestUtils.setField(connectionPoolConfig, "warmupTimeout", Duration.ofSeconds(5));
+
+        connectionPoolConfig.warmup(connectionPool);
+
+        assertEquals(3, connectionPool.getMetrics().map(PoolMetrics::allocatedSize).orElseThrow());
+        assertEquals(3, connectionPool.getMetrics().map(PoolMetrics::idleSize).orElseThrow());
+    }
+}
@@ -0,0 +1,42 @@
+package com.learning.spring.secure_reactive.configs;
+
+import com.learning.spring.secure_reactive.models.entity.UserEntity;
+import com.learning.spring.secure_reactive.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+public class MetricsConfigTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void repositoryMetricsPostProcessor_withRepositoryQueries_return_timerPerMethodAndOutcome() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(meterRegistry);
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findByEmail("user@mail.com")).thenReturn(Mono.just(new UserEntity()));
+        when(repository.findAllOrderById(10)).thenReturn(Flux.error(new IllegalStateException("down")));
+
+        BeanPostProcessor postProcessor = MetricsConfig.repositoryMetricsPostProcessor(provider);
+        UserRepository timed = (UserRepository) postProcessor.postProcessAfterInitialization(repository, "userRepository");
+
+        StepVerifier.create(timed.findByEmail("user@mail.com")).expectNextCount(1).verifyComplete();
+        StepVerifier.create(timed.findAllOrderById(10)).verifyError(IllegalStateException.class);
+
+        assertEquals(1, meterRegistry.get("repository.query")
+                .tags("repository", "userRepository", "method", "findByEmail", "outcome", "success")
+                .timer().count());
+        assertEquals(1, meterRegistry.get("repository.query")
+                .tags("method", "findAllOrderById", "outcome", "error")
+                .timer().count());
+    }
+}
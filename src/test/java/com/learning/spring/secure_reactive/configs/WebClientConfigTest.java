@@ -0,0 +1,86 @@
+package com.learning.spring.secure_reactive.configs;
+
+import com.learning.spring.secure_reactive.models.RequestDeadline;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WebClientConfigTest {
+
+    private DisposableServer server;
+    private ConnectionProvider connectionProvider;
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        server = HttpServer.create()
+                .port(0)
+                .route(routes -> routes
+                        .get("/deadline", (request, response) -> response.sendString(
+                                Mono.justOrEmpty(request.requestHeaders().get(RequestDeadline.HEADER)).defaultIfEmpty("none")))
+                        .get("/slow", (request, response) -> response.sendString(
+                                Mono.delay(Duration.ofSeconds(2)).thenReturn("late"))))
+                .bindNow();
+
+        WebClientConfig webClientConfig = new WebClientConfig();
+        ReflectionTestUtils.setField(webClientConfig, "baseUrl", "http://localhost:" + server.port());
+        ReflectionTestUtils.setField(webClientConfig, "maxConnections", 10);
+        ReflectionTestUtils.setField(webClientConfig, "pendingAcquireMaxCount", 10);
+        ReflectionTestUtils.setField(webClientConfig, "pendingAcquireTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(webClientConfig, "maxIdleTime", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(webClientConfig, "maxLifeTime", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(webClientConfig, "evictInterval", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(webClientConfig, "connectTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(webClientConfig, "responseTimeout", Duration.ofMillis(200));
+        connectionProvider = webClientConfig.externalConnectionProvider();
+        webClient = webClientConfig.webClient(WebClient.builder(), connectionProvider);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionProvider.dispose();
+        server.disposeNow();
+    }
+
+    @Test
+    void webClient_withRequestDeadline_return_remainingBudgetHeader() {
+        StepVerifier.create(webClient.get().uri("/deadline").retrieve().bodyToMono(String.class)
+                        .contextWrite(RequestDeadline.after(Duration.ofSeconds(5))::writeTo))
+                .expectNextMatches(header -> {
+                    long millis = Long.parseLong(header);
+                    return millis > 0 && millis <= 5000;
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void webClient_withoutRequestDeadline_return_noBudgetHeader() {
+        StepVerifier.create(webClient.get().uri("/deadline").retrieve().bodyToMono(String.class))
+                .expectNext("none")
+                .verifyComplete();
+    }
+
+    @Test
+    void webClient_withSlowResponse_return_responseTimeout() {
+        StepVerifier.create(webClient.get().uri("/slow").retrieve().bodyToMono(String.class))
+                .expectErrorSatisfies(e -> {
+                    assertInstanceOf(WebClientRequestException.class, e);
+                    assertTrue(e.getCause() instanceof ReadTimeoutException, String.valueOf(e.getCause()));
+                })
+                .verify(Duration.ofSeconds(1));
+    }
+}
@@ -1,22 +1,31 @@
 package com.learning.spring.secure_reactive.controllers;
 
 import com.learning.spring.secure_reactive.middlewares.TestSecurityConfig;
+import com.learning.spring.secure_reactive.models.PageCursor;
+import com.learning.spring.secure_reactive.models.RequestDeadline;
 import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.UserImportResult;
 import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import com.learning.spring.secure_reactive.services.UserImportService;
 import com.learning.spring.secure_reactive.services.UserService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -27,6 +36,9 @@ public class UserControllerTest {
     @MockitoBean
     private UserService userService;
 
+    @MockitoBean
+    private UserImportService userImportService;
+
     @Autowired
     private WebTestClient webTestClient;
 
@@ -104,4 +116,117 @@ public class UserControllerTest {
 
         verify(userService, times(1)).createUser(any());
     }
+
+    @Test
+    void createUser_whenHashingPoolIsFull_return_serviceUnavailableWithRetryAfter() {
+        CreateUserRequest request = new CreateUserRequest()
+                .setFirstName("testFName")
+                .setLastName("lastName")
+                .setEmail("testEmail@mail.com")
+                .setPassword("1234567890");
+        when(userService.createUser(any())).thenReturn(Mono.error(new RejectedExecutionException("queue full")));
+        webTestClient
+                .post()
+                .uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    @Test
+    void createUsers_withNdjsonStream_return_resultPerRecord() {
+        String body = """
+                {"firstName":"first","lastName":"user","email":"first@mail.com","password":"1234567890"}
+                {"firstName":"second","lastName":"user","email":"second@mail.com","password":"123"}
+                """;
+        when(userImportService.importUsers(any())).thenAnswer(invocation -> {
+            Flux<CreateUserRequest> requests = invocation.getArgument(0);
+            return requests.index().map(indexed -> new UserImportResult()
+                    .setIndex(indexed.getT1())
+                    .setStatus(UserImportResult.Status.CREATED));
+        });
+
+        webTestClient
+                .post()
+                .uri("/users/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(UserImportResult.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getAllUser_withoutPage_return_keysetPageAndNextCursor() {
+        User first = new User().setId(UUID.randomUUID()).setFirstName("first");
+        User second = new User().setId(UUID.randomUUID()).setFirstName("second");
+        UUID after = UUID.randomUUID();
+        when(userService.getAllUserAfter(after, 2, null)).thenReturn(Flux.just(first, second));
+
+        webTestClient
+                .get()
+                .uri("/users?limit=2&after=" + PageCursor.encode(after))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("Next-Cursor", PageCursor.encode(second.getId()))
+                .expectBodyList(User.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getAllUser_withInvalidCursor_return_badRequest() {
+        webTestClient
+                .get()
+                .uri("/users?after=not-a-cursor")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(userService, never()).getAllUserAfter(any(), anyInt(), any());
+    }
+
+    @Test
+    void getAllUser_withLimitAboveMax_return_badRequest() {
+        webTestClient
+                .get()
+                .uri("/users?limit=100000000")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        verify(userService, never()).getAllUserAfter(any(), anyInt(), any());
+    }
+
+    @Test
+    void streamUser_withoutAccept_return_streamWithoutDeadline() {
+        when(userService.streamUser(any(), anyBoolean(), any(), any(), anyBoolean()))
+                .thenReturn(Flux.deferContextual(context -> Flux.just(ServerSentEvent.builder(
+                        RequestDeadline.from(context).isPresent() ? "deadline" : "none").build())));
+
+        webTestClient
+                .get()
+                .uri("/users/stream")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> assertTrue(body.contains("data:none"), body));
+    }
+
+    @Test
+    void getAllUser_withoutAccept_return_defaultDeadline() {
+        when(userService.getAllUserAfter(any(), anyInt(), any()))
+                .thenReturn(Flux.deferContextual(context -> Flux.just(new User()
+                        .setId(UUID.randomUUID())
+                        .setFirstName(RequestDeadline.from(context).isPresent() ? "deadline" : "none"))));
+
+        webTestClient
+                .get()
+                .uri("/users")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(User.class)
+                .value(users -> assertEquals("deadline", users.get(0).getFirstName()));
+    }
 }
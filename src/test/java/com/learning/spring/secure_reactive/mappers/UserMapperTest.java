@@ -0,0 +1,51 @@
+package com.learning.spring.secure_reactive.mappers;
+
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.entity.UserEntity;
+import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserMapperTest {
+
+    private final UserMapper userMapper = Mappers.getMapper(UserMapper.class);
+
+    @Test
+    void toModel_withEntity_return_userWithoutPassword() {
+        UserEntity userEntity = new UserEntity()
+                .setId(UUID.randomUUID())
+                .setFirstName("firstName")
+                .setLastName("lastName")
+                .setEmail("user@mail.com")
+                .setPassword("encodedPassword");
+
+        User user = userMapper.toModel(userEntity);
+
+        assertEquals(userEntity.getId(), user.getId());
+        assertEquals("firstName", user.getFirstName());
+        assertEquals("lastName", user.getLastName());
+        assertEquals("user@mail.com", user.getEmail());
+        assertNull(user.getAlbums());
+    }
+
+    @Test
+    void toEntity_withCreateRequest_return_entityWithoutIdAndPassword() {
+        CreateUserRequest request = new CreateUserRequest()
+                .setFirstName("firstName")
+                .setLastName("lastName")
+                .setEmail("user@mail.com")
+                .setPassword("1234567890");
+
+        UserEntity userEntity = userMapper.toEntity(request);
+
+        assertNull(userEntity.getId());
+        assertNull(userEntity.getPassword());
+        assertEquals("firstName", userEntity.getFirstName());
+        assertEquals("lastName", userEntity.getLastName());
+        assertEquals("user@mail.com", userEntity.getEmail());
+    }
+}
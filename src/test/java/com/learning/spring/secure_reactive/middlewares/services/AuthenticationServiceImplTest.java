@@ -0,0 +1,144 @@
+package com.learning.spring.secure_reactive.middlewares.services;
+
+import com.learning.spring.secure_reactive.components.JwtHandler;
+import com.learning.spring.secure_reactive.middlewares.configs.WebSecurityConfig;
+import com.learning.spring.secure_reactive.models.entity.UserEntity;
+import com.learning.spring.secure_reactive.repositories.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthenticationServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JwtHandler jwtHandler;
+
+    @Mock
+    private RefreshTokenService refreshTokenService;
+
+    @InjectMocks
+    private AuthService authService;
+
+    private final PasswordEncoder passwordEncoder = WebSecurityConfig.delegatingPasswordEncoder(4);
+
+    private AuthenticationServiceImpl authenticationService;
+
+    @BeforeEach
+    void setUp() {
+        UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
+                new UserDetailsRepositoryReactiveAuthenticationManager(authService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setScheduler(Schedulers.immediate());
+        authenticationManager.setUserDetailsPasswordService(authService);
+        authenticationService = new AuthenticationServiceImpl(authenticationManager);
+        ReflectionTestUtils.setField(authenticationService, "jwtHandler", jwtHandler);
+        ReflectionTestUtils.setField(authenticationService, "refreshTokenService", refreshTokenService);
+    }
+
+    @Test
+    void authentication_withValidCredentials_return_tokenUsingSingleLookup() {
+        UUID userId = UUID.randomUUID();
+        UserEntity userEntity = new UserEntity()
+                .setId(userId)
+                .setEmail("testEmail@mail.com")
+                .setPassword(passwordEncoder.encode("1234567890"));
+
+        when(userRepository.findByEmail("testEmail@mail.com")).thenReturn(Mono.just(userEntity));
+        when(jwtHandler.generateJwtToken(userId.toString())).thenReturn("jwt-token");
+        when(refreshTokenService.issue(userId)).thenReturn(Mono.just("refresh-token"));
+
+        StepVerifier.create(authenticationService.authentication("testEmail@mail.com", "1234567890"))
+                .expectNextMatches(result -> result.get("userId").equals(userId.toString())
+                        && result.get("token").equals("jwt-token")
+                        && result.get("refreshToken").equals("refresh-token"))
+                .verifyComplete();
+        verify(userRepository, times(1)).findByEmail("testEmail@mail.com");
+    }
+
+    @Test
+    void authentication_withWrongPassword_return_badCredentials() {
+        UserEntity userEntity = new UserEntity()
+                .setId(UUID.randomUUID())
+                .setEmail("testEmail@mail.com")
+                .setPassword(passwordEncoder.encode("1234567890"));
+
+        when(userRepository.findByEmail("testEmail@mail.com")).thenReturn(Mono.just(userEntity));
+
+        StepVerifier.create(authenticationService.authentication("testEmail@mail.com", "wrongPassword"))
+                .expectError(BadCredentialsException.class)
+                .verify();
+        verify(jwtHandler, never()).generateJwtToken(any());
+    }
+
+    @Test
+    void authentication_withLegacyHash_return_tokenAndRehashesPassword() {
+        UUID userId = UUID.randomUUID();
+        UserEntity userEntity = new UserEntity()
+                .setId(userId)
+                .setEmail("testEmail@mail.com")
+                .setPassword(new BCryptPasswordEncoder(5).encode("1234567890"));
+
+        when(userRepository.findByEmail("testEmail@mail.com")).thenReturn(Mono.just(userEntity));
+        when(userRepository.updatePassword(eq(userId), any())).thenReturn(Mono.just(1));
+        when(jwtHandler.generateJwtToken(userId.toString())).thenReturn("jwt-token");
+        when(refreshTokenService.issue(userId)).thenReturn(Mono.just("refresh-token"));
+
+        StepVerifier.create(authenticationService.authentication("testEmail@mail.com", "1234567890"))
+                .expectNextMatches(result -> result.get("token").equals("jwt-token"))
+                .verifyComplete();
+        verify(userRepository, times(1)).updatePassword(eq(userId), startsWith("{bcrypt}$2a$04$"));
+    }
+
+    @Test
+    void authentication_withCurrentHash_return_tokenWithoutRehash() {
+        UUID userId = UUID.randomUUID();
+        UserEntity userEntity = new UserEntity()
+                .setId(userId)
+                .setEmail("testEmail@mail.com")
+                .setPassword(passwordEncoder.encode("1234567890"));
+
+        when(userRepository.findByEmail("testEmail@mail.com")).thenReturn(Mono.just(userEntity));
+        when(jwtHandler.generateJwtToken(userId.toString())).thenReturn("jwt-token");
+        when(refreshTokenService.issue(userId)).thenReturn(Mono.just("refresh-token"));
+
+        StepVerifier.create(authenticationService.authentication("testEmail@mail.com", "1234567890"))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(userRepository, never()).updatePassword(any(), any());
+    }
+
+    @Test
+    void refresh_withValidRefreshToken_return_newTokensWithoutPasswordCheck() {
+        UUID userId = UUID.randomUUID();
+        when(refreshTokenService.consume("old-refresh-token")).thenReturn(Mono.just(userId));
+        when(refreshTokenService.issue(userId)).thenReturn(Mono.just("new-refresh-token"));
+        when(jwtHandler.generateJwtToken(userId.toString())).thenReturn("jwt-token");
+
+        StepVerifier.create(authenticationService.refresh("old-refresh-token"))
+                .expectNextMatches(result -> result.get("token").equals("jwt-token")
+                        && result.get("refreshToken").equals("new-refresh-token"))
+                .verifyComplete();
+        verify(userRepository, never()).findByEmail(any());
+    }
+}
@@ -0,0 +1,99 @@
+package com.learning.spring.secure_reactive.middlewares.services;
+
+import com.learning.spring.secure_reactive.models.entity.RefreshTokenEntity;
+import com.learning.spring.secure_reactive.repositories.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenServiceTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private RefreshTokenService refreshTokenService;
+
+    @BeforeEach
+    void setUp() {
+        refreshTokenService = new RefreshTokenService(refreshTokenRepository);
+        ReflectionTestUtils.setField(refreshTokenService, "refreshTokenTtl", Duration.ofDays(30));
+    }
+
+    @Test
+    void issue_withUserId_return_tokenAndStoresOnlyItsHash() {
+        UUID userId = UUID.randomUUID();
+        ArgumentCaptor<RefreshTokenEntity> captor = ArgumentCaptor.forClass(RefreshTokenEntity.class);
+        when(refreshTokenRepository.save(captor.capture())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        String refreshToken = refreshTokenService.issue(userId).block();
+
+        RefreshTokenEntity stored = captor.getValue();
+        assertEquals(userId, stored.getUserId());
+        assertEquals(64, stored.getTokenHash().length());
+        assertNotEquals(refreshToken, stored.getTokenHash());
+    }
+
+    @Test
+    void consume_withValidToken_return_userIdAndDeletesToken() {
+        UUID userId = UUID.randomUUID();
+        UUID tokenId = UUID.randomUUID();
+        RefreshTokenEntity stored = new RefreshTokenEntity()
+                .setId(tokenId)
+                .setUserId(userId)
+                .setExpiresAt(LocalDateTime.now(ZoneOffset.UTC).plusDays(1));
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Mono.just(stored));
+        when(refreshTokenRepository.deleteAndCount(tokenId)).thenReturn(Mono.just(1));
+
+        StepVerifier.create(refreshTokenService.consume("refresh-token"))
+                .expectNext(userId)
+                .verifyComplete();
+        verify(refreshTokenRepository, times(1)).deleteAndCount(tokenId);
+    }
+
+    @Test
+    void consume_withTokenAlreadyUsed_return_badCredentials() {
+        UUID tokenId = UUID.randomUUID();
+        RefreshTokenEntity stored = new RefreshTokenEntity()
+                .setId(tokenId)
+                .setUserId(UUID.randomUUID())
+                .setExpiresAt(LocalDateTime.now(ZoneOffset.UTC).plusDays(1));
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Mono.just(stored));
+        when(refreshTokenRepository.deleteAndCount(tokenId)).thenReturn(Mono.just(0));
+
+        StepVerifier.create(refreshTokenService.consume("refresh-token"))
+                .expectError(BadCredentialsException.class)
+                .verify();
+    }
+
+    @Test
+    void consume_withExpiredToken_return_badCredentials() {
+        RefreshTokenEntity stored = new RefreshTokenEntity()
+                .setId(UUID.randomUUID())
+                .setUserId(UUID.randomUUID())
+                .setExpiresAt(LocalDateTime.now(ZoneOffset.UTC).minusMinutes(1));
+        when(refreshTokenRepository.findByTokenHash(any())).thenReturn(Mono.just(stored));
+
+        StepVerifier.create(refreshTokenService.consume("refresh-token"))
+                .expectError(BadCredentialsException.class)
+                .verify();
+        verify(refreshTokenRepository, never()).deleteAndCount(any());
+    }
+}
@@ -0,0 +1,65 @@
+package com.learning.spring.secure_reactive.repositories;
+
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.UUID;
+
+@DataR2dbcTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UserExportRepositoryTest {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private UserExportRepository userExportRepository;
+
+    @BeforeAll
+    void setUp() {
+        userExportRepository = new UserExportRepository(databaseClient);
+
+        String insertSql = "INSERT INTO users (id, first_name, last_name, email, password) VALUES " +
+                "(:id, :firstName, :lastName, :email, :password)";
+        Flux.range(1, 3)
+                .concatMap(i -> databaseClient.sql(insertSql)
+                        .bind("id", UUID.randomUUID())
+                        .bind("firstName", "export" + i + "_firstName")
+                        .bind("lastName", "export" + i + "_lastName")
+                        .bind("email", "export" + i + "@mail.com")
+                        .bind("password", "1234567890")
+                        .fetch()
+                        .rowsUpdated())
+                .then()
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @AfterAll
+    void tearDown() {
+        databaseClient.sql("TRUNCATE TABLE users")
+                .then()
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamAll_withoutFields_return_allUsersWithDefaultColumns() {
+        StepVerifier.create(userExportRepository.streamAll(null))
+                .expectNextMatches(user -> user.getId() != null && user.getEmail() != null && user.getFirstName() != null)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamAll_withFields_return_onlyProjectedColumns() {
+        StepVerifier.create(userExportRepository.streamAll(List.of("email")))
+                .expectNextMatches(user -> user.getId() == null && user.getFirstName() == null && user.getEmail() != null)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+}
@@ -1,5 +1,6 @@
 package com.learning.spring.secure_reactive.repositories;
 
+import com.learning.spring.secure_reactive.models.User;
 import com.learning.spring.secure_reactive.models.entity.UserEntity;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,21 +82,34 @@ public class UserRepositoryTest {
     }
 
     @Test
-    void findAllBy_withValidPageable_return_results() {
+    void findUsers_withValidPage_return_results() {
         Pageable pageable = PageRequest.of(0, 2);
-        StepVerifier.create(userRepository.findAllBy(pageable))
+        StepVerifier.create(userRepository.findUsers(pageable.getPageSize(), pageable.getOffset()))
                 .expectNextCount(2)
                 .verifyComplete();
     }
 
     @Test
-    void findAllBy_withNonExistentPage_return_Empty() {
+    void findUsers_withNonExistentPage_return_Empty() {
         Pageable pageable = PageRequest.of(10, 2);
-        StepVerifier.create(userRepository.findAllBy(pageable))
+        StepVerifier.create(userRepository.findUsers(pageable.getPageSize(), pageable.getOffset()))
                 .expectNextCount(0)
                 .verifyComplete();
     }
 
+    @Test
+    void findUserById_withExistingId_return_publicColumns() {
+        UserEntity saved = userRepository.findByEmail("testEmail1@mail.com").block();
+
+        StepVerifier.create(userRepository.findUserById(saved.getId()))
+                .expectNextMatches(user -> user.getId().equals(saved.getId())
+                        && user.getFirstName().equals("user1_firstName")
+                        && user.getLastName().equals("user1_lastName")
+                        && user.getEmail().equals("testEmail1@mail.com")
+                        && user.getAlbums() == null)
+                .verifyComplete();
+    }
+
     @Test
     void save_withEmailThatExists_return_failed() {
         UserEntity user = new UserEntity()
@@ -126,4 +140,17 @@ public class UserRepositoryTest {
                         && savedUser.getEmail().equals(user.getEmail()))
                 .verifyComplete();
     }
+
+    @Test
+    void findAllByIdAfterOrderById_withFirstPageCursor_return_remainingUsers() {
+        long total = userRepository.count().block();
+        User first = userRepository.findAllOrderById(1).blockFirst();
+
+        StepVerifier.create(userRepository.findAllByIdAfterOrderById(first.getId(), 100))
+                .thenConsumeWhile(user -> !user.getId().equals(first.getId()))
+                .verifyComplete();
+        StepVerifier.create(userRepository.findAllByIdAfterOrderById(first.getId(), 100))
+                .expectNextCount(total - 1)
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,237 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.learning.spring.secure_reactive.components.JwtHandler;
+import com.learning.spring.secure_reactive.components.JwtKeyRing;
+import com.learning.spring.secure_reactive.middlewares.JwtAuthenticationFilter;
+import com.learning.spring.secure_reactive.models.Album;
+import com.learning.spring.secure_reactive.models.RequestDeadline;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class AlbumServiceTest {
+
+    /* same secret as the user signing key, so only the audience keeps the service token out */
+    private static final String SECRET = "====secretKey24354dfd54tedfklsd54df5424355ertdfgs====";
+
+    private final AtomicInteger albumCalls = new AtomicInteger();
+    private final List<String> requestedQueries = new CopyOnWriteArrayList<>();
+    private final List<String> requestedAuthorizations = new CopyOnWriteArrayList<>();
+    private AlbumService albumService;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+    private SimpleMeterRegistry meterRegistry;
+    private IntFunction<Duration> responseDelay = call -> Duration.ofMillis(50);
+    private IntFunction<HttpStatus> responseStatus = call -> HttpStatus.OK;
+
+    @BeforeEach
+    void setUp() {
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost")
+                .exchangeFunction(request -> {
+                    int call = albumCalls.incrementAndGet();
+                    requestedQueries.add(request.url().getQuery());
+                    requestedAuthorizations.add(request.headers().getFirst(HttpHeaders.AUTHORIZATION));
+                    String body = UriComponentsBuilder.fromUri(request.url()).build()
+                            .getQueryParams().get("userId").stream()
+                            .map(userId -> "{\"id\":\"" + call + "\",\"title\":\"album " + call + "\",\"userId\":\"" + userId + "\"}")
+                            .collect(Collectors.joining(",", "[", "]"));
+                    return Mono.just(ClientResponse.create(responseStatus.apply(call))
+                                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                    .body(body)
+                                    .build())
+                            .delayElement(responseDelay.apply(call));
+                })
+                .build();
+
+        circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        meterRegistry = new SimpleMeterRegistry();
+        albumService = new AlbumService(webClient, circuitBreakerRegistry, BulkheadRegistry.ofDefaults(), meterRegistry);
+        ReflectionTestUtils.setField(albumService, "clientSecret", SECRET);
+        ReflectionTestUtils.setField(albumService, "clientSubject", "secure-reactive");
+        ReflectionTestUtils.setField(albumService, "serviceTokenTtl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(albumService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(albumService, "cacheTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(albumService, "cacheRefreshAfter", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(albumService, "batchTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(albumService, "hedgePercentile", 0.95);
+        ReflectionTestUtils.setField(albumService, "hedgeMinDelay", Duration.ofMillis(20));
+        ReflectionTestUtils.setField(albumService, "hedgeMaxDelay", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(albumService, "loadDeadline", Duration.ofSeconds(2));
+        albumService.init();
+    }
+
+    @Test
+    void getUserAlbums_withConcurrentMisses_return_albumsFromSingleCall() {
+        UUID userId = UUID.randomUUID();
+
+        StepVerifier.create(Mono.zip(
+                        albumService.getUserAlbums(userId),
+                        albumService.getUserAlbums(userId)))
+                .expectNextMatches(albums -> albums.getT1().equals(albums.getT2()) && albums.getT1().size() == 1)
+                .verifyComplete();
+        StepVerifier.create(albumService.getUserAlbums(userId))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(1, albumCalls.get());
+    }
+
+    @Test
+    void getUserAlbums_withStaleEntry_return_staleAlbumsAndRefreshesInBackground() {
+        ReflectionTestUtils.setField(albumService, "cacheRefreshAfter", Duration.ZERO);
+        UUID userId = UUID.randomUUID();
+
+        List<Album> first = albumService.getUserAlbums(userId).block();
+        List<Album> stale = albumService.getUserAlbums(userId).block();
+        assertEquals(first, stale);
+
+        StepVerifier.create(Mono.delay(Duration.ofMillis(200)).then(albumService.getUserAlbums(userId)))
+                .expectNextMatches(albums -> albums.get(0).getId().equals("2"))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAlbumsForUsers_withOneCachedUser_return_allAlbumsFetchingOnlyMissingUsers() {
+        UUID cachedUser = UUID.randomUUID();
+        UUID firstMissing = UUID.randomUUID();
+        UUID secondMissing = UUID.randomUUID();
+        albumService.getUserAlbums(cachedUser).block();
+
+        StepVerifier.create(albumService.getAlbumsForUsers(List.of(cachedUser, firstMissing, secondMissing)))
+                .expectNextMatches(albumsByUser -> albumsByUser.size() == 3
+                        && albumsByUser.get(firstMissing).get(0).getUserId().equals(firstMissing)
+                        && albumsByUser.get(secondMissing).get(0).getUserId().equals(secondMissing))
+                .verifyComplete();
+        assertEquals(2, albumCalls.get());
+        assertFalse(requestedQueries.get(1).contains(cachedUser.toString()));
+    }
+
+    @Test
+    void getUserAlbums_withOpenCircuit_return_errorWithoutCallingAlbumService() {
+        circuitBreakerRegistry.circuitBreaker("albums").transitionToOpenState();
+
+        StepVerifier.create(albumService.getUserAlbums(UUID.randomUUID()))
+                .expectError(CallNotPermittedException.class)
+                .verify(Duration.ofMillis(500));
+        assertEquals(0, albumCalls.get());
+    }
+
+    @Test
+    void getUserAlbums_withSlowFirstCall_return_albumsFromHedgedCall() {
+        ReflectionTestUtils.setField(albumService, "hedgeEnabled", true);
+        responseDelay = call -> call == 1 ? Duration.ofSeconds(5) : Duration.ofMillis(50);
+
+        StepVerifier.create(albumService.getUserAlbums(UUID.randomUUID()))
+                .expectNextMatches(albums -> albums.get(0).getId().equals("2"))
+                .verifyComplete();
+        assertEquals(2, albumCalls.get());
+        assertEquals(1, meterRegistry.get("albums.hedged").counter().count());
+    }
+
+    @Test
+    void getUserAlbums_withFastFailingFirstCall_return_errorWithoutHedging() throws InterruptedException {
+        ReflectionTestUtils.setField(albumService, "hedgeEnabled", true);
+        responseStatus = call -> HttpStatus.NOT_FOUND;
+        responseDelay = call -> Duration.ofMillis(5);
+
+        StepVerifier.create(albumService.getUserAlbums(UUID.randomUUID()))
+                .expectErrorMessage("Albums not found for user")
+                .verify(Duration.ofSeconds(1));
+        /* past the 100ms hedge delay, no hedge may have been sent */
+        Thread.sleep(200);
+        assertEquals(1, albumCalls.get());
+        assertEquals(0, meterRegistry.get("albums.hedged").counter().count());
+    }
+
+    @Test
+    void getUserAlbums_withExpiringDeadline_return_timeoutBeforeSlowResponse() {
+        responseDelay = call -> Duration.ofSeconds(5);
+
+        StepVerifier.create(albumService.getUserAlbums(UUID.randomUUID())
+                        .contextWrite(RequestDeadline.after(Duration.ofMillis(100))::writeTo))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void getUserAlbums_withShortDeadlineOfFirstCaller_return_albumsToLaterCaller() {
+        responseDelay = call -> Duration.ofMillis(300);
+        UUID userId = UUID.randomUUID();
+
+        Mono<List<Album>> shortDeadline = albumService.getUserAlbums(userId)
+                .contextWrite(RequestDeadline.after(Duration.ofMillis(100))::writeTo);
+        Mono<List<Album>> later = Mono.delay(Duration.ofMillis(20))
+                .then(albumService.getUserAlbums(userId));
+
+        StepVerifier.create(shortDeadline).expectError(TimeoutException.class).verify(Duration.ofSeconds(1));
+        StepVerifier.create(later).expectNextCount(1).verifyComplete();
+        assertEquals(1, albumCalls.get());
+    }
+
+    @Test
+    void getAlbumsForUsers_withMissingUsers_return_albumsFetchedWithServiceToken() {
+        StepVerifier.create(albumService.getAlbumsForUsers(List.of(UUID.randomUUID(), UUID.randomUUID())))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(albumService.getUserAlbums(UUID.randomUUID()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertEquals(2, requestedAuthorizations.size());
+        assertEquals(requestedAuthorizations.get(0), requestedAuthorizations.get(1));
+        Claims claims = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes()))
+                .build()
+                .parseSignedClaims(requestedAuthorizations.get(0).substring("Bearer ".length()))
+                .getPayload();
+        assertEquals("secure-reactive", claims.getSubject());
+        assertEquals(Set.of("albums"), claims.getAudience());
+    }
+
+    @Test
+    void getUserAlbums_withServiceToken_return_tokenRefusedByAuthenticationFilter() {
+        albumService.getUserAlbums(UUID.randomUUID()).block();
+        JwtKeyRing jwtKeyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(jwtKeyRing, "jwtSecret", SECRET);
+        ReflectionTestUtils.invokeMethod(jwtKeyRing, "init");
+        JwtHandler jwtHandler = new JwtHandler(jwtKeyRing);
+        ReflectionTestUtils.setField(jwtHandler, "verifiedCacheMaxSize", 100L);
+        ReflectionTestUtils.invokeMethod(jwtHandler, "init");
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtHandler, meterRegistry);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/users")
+                .header(HttpHeaders.AUTHORIZATION, requestedAuthorizations.get(0)));
+
+        StepVerifier.create(filter.filter(exchange, chained -> Mono.error(new IllegalStateException("authenticated"))))
+                .verifyComplete();
+        assertEquals(HttpStatus.UNAUTHORIZED, exchange.getResponse().getStatusCode());
+    }
+}
@@ -0,0 +1,108 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.learning.spring.secure_reactive.components.UserEventHub;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import com.learning.spring.secure_reactive.models.UserImportResult;
+import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import com.learning.spring.secure_reactive.repositories.UserOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.*;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@DataR2dbcTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class UserImportServiceTest {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    private UserOutboxRepository userOutboxRepository;
+
+    private UserImportService userImportService;
+
+    @BeforeAll
+    void setUp() {
+        UserEventHub userEventHub = new UserEventHub(new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(userEventHub, "init");
+        UserOutboxService userOutboxService = new UserOutboxService(userOutboxRepository, userEventHub, "test-node");
+        userImportService = new UserImportService(
+                databaseClient,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new BCryptPasswordEncoder(4),
+                Schedulers.immediate(),
+                userEventHub,
+                userOutboxService,
+                TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory)),
+                Mappers.getMapper(UserMapper.class));
+        ReflectionTestUtils.setField(userImportService, "batchSize", 2);
+        ReflectionTestUtils.setField(userImportService, "batchMaxWait", Duration.ofMillis(50));
+        ReflectionTestUtils.setField(userImportService, "hashConcurrency", 2);
+    }
+
+    @AfterAll
+    void tearDown() {
+        databaseClient.sql("TRUNCATE TABLE users")
+                .then()
+                .then(databaseClient.sql("TRUNCATE TABLE user_outbox").then())
+                .as(StepVerifier::create)
+                .verifyComplete();
+    }
+
+    @Test
+    void importUsers_withMixedRecords_return_resultPerRecordInOrder() {
+        Flux<CreateUserRequest> requests = Flux.just(
+                request("import1@mail.com", "1234567890"),
+                request("import2@mail.com", "123"),
+                request("import3@mail.com", "1234567890"),
+                request("import1@mail.com", "1234567890"),
+                request("import4@mail.com", "1234567890"));
+
+        StepVerifier.create(userImportService.importUsers(requests))
+                .expectNextMatches(result -> result.getIndex() == 0 && result.getStatus() == UserImportResult.Status.CREATED
+                        && result.getUser().getId() != null)
+                .expectNextMatches(result -> result.getIndex() == 1 && result.getStatus() == UserImportResult.Status.INVALID)
+                .expectNextMatches(result -> result.getIndex() == 2 && result.getStatus() == UserImportResult.Status.CREATED)
+                .expectNextMatches(result -> result.getIndex() == 3 && result.getStatus() == UserImportResult.Status.CONFLICT)
+                .expectNextMatches(result -> result.getIndex() == 4 && result.getStatus() == UserImportResult.Status.CREATED)
+                .verifyComplete();
+
+        databaseClient.sql("SELECT COUNT(*) AS total FROM users WHERE email LIKE 'import%'")
+                .map(row -> row.get("total", Long.class))
+                .one()
+                .as(StepVerifier::create)
+                .expectNext(3L)
+                .verifyComplete();
+        databaseClient.sql("SELECT COUNT(*) AS total FROM user_outbox WHERE email LIKE 'import%'")
+                .map(row -> row.get("total", Long.class))
+                .one()
+                .as(StepVerifier::create)
+                .expectNext(3L)
+                .verifyComplete();
+    }
+
+    private static CreateUserRequest request(String email, String password) {
+        return new CreateUserRequest()
+                .setFirstName("importFName")
+                .setLastName("importLName")
+                .setEmail(email)
+                .setPassword(password);
+    }
+}
@@ -0,0 +1,99 @@
+package com.learning.spring.secure_reactive.services;
+
+import com.learning.spring.secure_reactive.components.UserEventHub;
+import com.learning.spring.secure_reactive.models.User;
+import com.learning.spring.secure_reactive.models.entity.UserOutboxEntity;
+import com.learning.spring.secure_reactive.repositories.UserOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class UserOutboxServiceTest {
+
+    @Mock
+    private UserOutboxRepository userOutboxRepository;
+
+    @Mock
+    private UserEventHub userEventHub;
+
+    private UserOutboxService userOutboxService;
+
+    @BeforeEach
+    void setUp() {
+        userOutboxService = new UserOutboxService(userOutboxRepository, userEventHub, "this-node");
+        ReflectionTestUtils.setField(userOutboxService, "batchSize", 10);
+        ReflectionTestUtils.setField(userOutboxService, "gapTimeout", Duration.ofMinutes(1));
+    }
+
+    @Test
+    void relayBatch_withRowsFromOtherNodes_return_publishesOnlyForeignRowsUpToGap() {
+        when(userOutboxRepository.findMaxId()).thenReturn(Mono.just(0L));
+        when(userOutboxRepository.findAllByIdAfterOrderById(0L, 10))
+                .thenReturn(Flux.just(row(1, "other-node"), row(2, "this-node"), row(4, "other-node")));
+
+        StepVerifier.create(userOutboxService.relayBatch().then(userOutboxService.relayBatch()))
+                .expectNext(2)
+                .verifyComplete();
+
+        ArgumentCaptor<User> published = ArgumentCaptor.forClass(User.class);
+        verify(userEventHub, times(1)).publish(published.capture());
+        assertEquals("user1@mail.com", published.getValue().getEmail());
+    }
+
+    @Test
+    void relayBatch_withGapOlderThanTimeout_return_movesPastGap() {
+        ReflectionTestUtils.setField(userOutboxService, "gapTimeout", Duration.ZERO);
+        when(userOutboxRepository.findMaxId()).thenReturn(Mono.just(0L));
+        when(userOutboxRepository.findAllByIdAfterOrderById(0L, 10))
+                .thenReturn(Flux.just(row(1, "other-node"), row(3, "other-node")));
+
+        StepVerifier.create(userOutboxService.relayBatch().then(userOutboxService.relayBatch()))
+                .expectNext(2)
+                .verifyComplete();
+        verify(userEventHub, times(2)).publish(any());
+    }
+
+    @Test
+    void relayBatch_withPermanentGapUnderDefaultTimeout_return_laterEventsRelayedAfterTimeout() throws InterruptedException {
+        /* users.outbox.gap-timeout default, id 2 was rolled back and never shows up */
+        ReflectionTestUtils.setField(userOutboxService, "gapTimeout", Duration.ofSeconds(1));
+        when(userOutboxRepository.findMaxId()).thenReturn(Mono.just(0L));
+        when(userOutboxRepository.findAllByIdAfterOrderById(0L, 10))
+                .thenReturn(Flux.just(row(1, "other-node"), row(3, "other-node")));
+        when(userOutboxRepository.findAllByIdAfterOrderById(1L, 10))
+                .thenReturn(Flux.just(row(3, "other-node")));
+
+        StepVerifier.create(userOutboxService.relayBatch().then(userOutboxService.relayBatch()))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(userOutboxService.relayBatch()).expectNext(0).verifyComplete();
+
+        Thread.sleep(1100);
+        StepVerifier.create(userOutboxService.relayBatch()).expectNext(1).verifyComplete();
+        verify(userEventHub, times(2)).publish(any());
+    }
+
+    private static UserOutboxEntity row(long id, String origin) {
+        return new UserOutboxEntity()
+                .setId(id)
+                .setUserId(UUID.randomUUID())
+                .setFirstName("first" + id)
+                .setLastName("last" + id)
+                .setEmail("user" + id + "@mail.com")
+                .setOrigin(origin);
+    }
+}
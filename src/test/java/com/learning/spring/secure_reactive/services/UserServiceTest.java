@@ -1,22 +1,34 @@
 package com.learning.spring.secure_reactive.services;
 
+import com.learning.spring.secure_reactive.components.UserEventHub;
+import com.learning.spring.secure_reactive.mappers.UserMapper;
+import com.learning.spring.secure_reactive.models.Album;
 import com.learning.spring.secure_reactive.models.User;
 import com.learning.spring.secure_reactive.models.entity.UserEntity;
 import com.learning.spring.secure_reactive.models.request.CreateUserRequest;
+import com.learning.spring.secure_reactive.repositories.UserExportRepository;
 import com.learning.spring.secure_reactive.repositories.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -35,17 +47,35 @@ public class UserServiceTest {
     private PasswordEncoder passwordEncoder;
 
     @Mock
-    private WebClient webClient;
+    private AlbumService albumService;
 
-    private Sinks.Many<User> usersSinks;
+    @Mock
+    private UserExportRepository userExportRepository;
+
+    @Mock
+    private UserOutboxService userOutboxService;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private UserEventHub userEventHub;
 
     @BeforeEach
     void setUp() {
-        usersSinks = Sinks.many().multicast().onBackpressureBuffer();
-        userService = new UserService(userRepository, passwordEncoder, webClient, usersSinks);
+        userEventHub = new UserEventHub(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userEventHub, "bufferSize", 16);
+        ReflectionTestUtils.setField(userEventHub, "overflowPolicy", UserEventHub.OverflowPolicy.DROP_OLDEST);
+        ReflectionTestUtils.setField(userEventHub, "replaySize", 16);
+        ReflectionTestUtils.invokeMethod(userEventHub, "init");
+        userService = new UserService(userRepository, passwordEncoder, albumService, userEventHub, Schedulers.immediate(), userExportRepository,
+                userOutboxService, transactionalOperator, Mappers.getMapper(UserMapper.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(userService, "cacheMaxSize", 100L);
+        ReflectionTestUtils.setField(userService, "cacheTtl", Duration.ofMinutes(1));
+        userService.init();
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void createUser_withValidRequest_return_createdUserDetail() {
         CreateUserRequest request = new CreateUserRequest()
                 .setFirstName("testFName")
@@ -61,6 +91,8 @@ public class UserServiceTest {
 
         when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
         when(userRepository.save(any(UserEntity.class))).thenReturn(Mono.just(savedEntity));
+        when(userOutboxService.append(List.of(savedEntity.getId()))).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
         Mono<User> result = userService.createUser(Mono.just(request));
 
         StepVerifier.create(result)
@@ -80,6 +112,7 @@ public class UserServiceTest {
     }
 
     @Test
+    @SuppressWarnings("unchecked")
     void createUser_withValidRequest_return_emitsEventToSink() {
         CreateUserRequest request = new CreateUserRequest()
                 .setFirstName("testFName")
@@ -95,10 +128,11 @@ public class UserServiceTest {
 
         when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
         when(userRepository.save(any(UserEntity.class))).thenReturn(Mono.just(savedEntity));
+        when(userOutboxService.append(List.of(savedEntity.getId()))).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        Flux<User> result = usersSinks.asFlux();
         StepVerifier.create(userService.createUser(Mono.just(request))
-                        .thenMany(usersSinks.asFlux().take(1))
+                        .thenMany(userEventHub.subscribe(0L).map(UserEventHub.Event::user).take(1))
                 )
                 .expectNextMatches(user -> user.getId().equals(savedEntity.getId())
                         && user.getFirstName().equals(savedEntity.getFirstName())
@@ -110,16 +144,15 @@ public class UserServiceTest {
     @Test
     void getUserById_withValidRequest_return_userResponse() {
         UUID userId = UUID.randomUUID();
-        UserEntity savedEntity = new UserEntity()
+        User savedEntity = new User()
                 .setId(userId)
                 .setFirstName("testFName")
                 .setLastName("lastName")
-                .setEmail("testEmail@mail.com")
-                .setPassword("1234567890");
+                .setEmail("testEmail@mail.com");
 
-        when(userRepository.findById(userId)).thenReturn(Mono.just(savedEntity));
+        when(userRepository.findUserById(userId)).thenReturn(Mono.just(savedEntity));
 
-        Mono<User> result = userService.getUserById(userId, null, "jwt-token");
+        Mono<User> result = userService.getUserById(userId, null);
         StepVerifier.create(result)
                 .expectNextMatches(user -> user.getId().equals(savedEntity.getId())
                         && user.getFirstName().equals(savedEntity.getFirstName())
@@ -128,7 +161,101 @@ public class UserServiceTest {
                         && user.getAlbums() == null
                 )
                 .verifyComplete();
-        verify(userRepository, times(1)).findById(userId);
-        verify(webClient, never()).get();
+        verify(userRepository, times(1)).findUserById(userId);
+        verify(userRepository, never()).findById(any(UUID.class));
+        verify(albumService, never()).getUserAlbums(any());
+    }
+
+    @Test
+    void getUserById_withConcurrentAndRepeatedReads_return_oneQueryAndUnsharedCopies() {
+        UUID userId = UUID.randomUUID();
+        UUID missingId = UUID.randomUUID();
+        User stored = new User().setId(userId).setFirstName("testFName").setEmail("testEmail@mail.com");
+        when(userRepository.findUserById(userId)).thenReturn(Mono.just(stored).delayElement(Duration.ofMillis(50)));
+        when(userRepository.findUserById(missingId)).thenReturn(Mono.empty());
+
+        StepVerifier.create(Flux.merge(
+                        userService.getUserById(userId, null),
+                        userService.getUserById(userId, null),
+                        userService.getUserById(userId, null)))
+                .expectNextCount(3)
+                .verifyComplete();
+        User first = userService.getUserById(userId, null).block();
+        first.setAlbums(List.of(new Album()));
+        StepVerifier.create(userService.getUserById(userId, null))
+                .expectNextMatches(user -> user != first && user.getEmail().equals("testEmail@mail.com") && user.getAlbums() == null)
+                .verifyComplete();
+        verify(userRepository, times(1)).findUserById(userId);
+
+        /* unknown ids are not cached */
+        StepVerifier.create(userService.getUserById(missingId, null)).verifyComplete();
+        StepVerifier.create(userService.getUserById(missingId, null)).verifyComplete();
+        verify(userRepository, times(2)).findUserById(missingId);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createUser_thenGetUserById_return_createdUserWithoutQuery() {
+        CreateUserRequest request = new CreateUserRequest()
+                .setFirstName("testFName")
+                .setLastName("lastName")
+                .setEmail("testEmail@mail.com")
+                .setPassword("1234567890");
+        UserEntity savedEntity = new UserEntity()
+                .setId(UUID.randomUUID())
+                .setFirstName(request.getFirstName())
+                .setLastName(request.getLastName())
+                .setEmail(request.getEmail())
+                .setPassword("encodedPassword");
+
+        when(passwordEncoder.encode(any())).thenReturn("encodedPassword");
+        when(userRepository.save(any(UserEntity.class))).thenReturn(Mono.just(savedEntity));
+        when(userOutboxService.append(List.of(savedEntity.getId()))).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        StepVerifier.create(userService.createUser(Mono.just(request))
+                        .then(userService.getUserById(savedEntity.getId(), null)))
+                .expectNextMatches(user -> user.getId().equals(savedEntity.getId())
+                        && user.getEmail().equals(savedEntity.getEmail()))
+                .verifyComplete();
+        verify(userRepository, never()).findUserById(any());
+    }
+
+    @Test
+    void getAllUser_withIncludeAlbums_return_usersWithAlbumsFromOneBatch() {
+        ReflectionTestUtils.setField(userService, "albumBatchSize", 50);
+        ReflectionTestUtils.setField(userService, "albumBatchWindow", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(userService, "albumBatchConcurrency", 2);
+        User first = new User().setId(UUID.randomUUID()).setFirstName("first");
+        User second = new User().setId(UUID.randomUUID()).setFirstName("second");
+        Pageable pageable = PageRequest.of(0, 50);
+        Album album = new Album().setId("1").setTitle("album").setUserId(second.getId());
+
+        when(userRepository.findUsers(50, 0)).thenReturn(Flux.just(first, second));
+        when(albumService.getAlbumsForUsers(List.of(first.getId(), second.getId())))
+                .thenReturn(Mono.just(Map.of(second.getId(), List.of(album))));
+
+        StepVerifier.create(userService.getAllUser(pageable, "albums"))
+                .expectNextMatches(user -> user.getId().equals(first.getId()) && user.getAlbums() == null)
+                .expectNextMatches(user -> user.getId().equals(second.getId()) && user.getAlbums().equals(List.of(album)))
+                .verifyComplete();
+        verify(albumService, times(1)).getAlbumsForUsers(any());
+    }
+
+    @Test
+    void streamUser_withBatchAndDomain_return_matchingUsersGroupedInOneFrame() {
+        ReflectionTestUtils.setField(userService, "heartbeatInterval", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(userService, "streamBatchSize", 2);
+        ReflectionTestUtils.setField(userService, "streamBatchWindow", Duration.ofSeconds(1));
+
+        StepVerifier.create(userService.streamUser(null, false, null, "Mail.com", true).take(1))
+                .then(() -> List.of("first@mail.com", "other@gmail.com", "second@MAIL.com")
+                        .forEach(email -> userEventHub.publish(new User().setId(UUID.randomUUID()).setEmail(email))))
+                .expectNextMatches(frame -> frame.id().equals("3")
+                        && frame.data() instanceof List<?> users
+                        && users.size() == 2
+                        && ((User) users.get(0)).getEmail().equals("first@mail.com")
+                        && ((User) users.get(1)).getEmail().equals("second@MAIL.com"))
+                .verifyComplete();
     }
 }